@@ -0,0 +1,329 @@
+import java.util.HashMap;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.text.Font;
+
+/**
+ * A utility class that loads every game asset exactly once and hands out
+ * shared handles to it.
+ *
+ * The stickman, enemy, star and heart images are decoded at the size they are
+ * drawn at (times ATLAS_SCALE) and packed into a single texture atlas. Each
+ * frame is then available as a named Sprite. Fonts are cached by size. The
+ * class also counts cache hits, misses and the number of bytes held in
+ * decoded images so the cost of the assets can be monitored.
+ *
+ * The assets can be loaded either at once with preload, or in the background
+ * with loadAsync: every image is then decoded in parallel by the image loader
+ * of JavaFX, and progressProperty and readyProperty tell the intro scene how
+ * far along the loading is.
+ */
+public class AssetCache {
+
+    // Resolution of the atlas relative to the size the sprites are drawn at
+    private static final int ATLAS_SCALE = 2;
+
+    // Maximum width of a row of the atlas before a new row is started
+    private static final int ATLAS_MAX_WIDTH = 1024;
+
+    // Gap between two sprites of the atlas to avoid bleeding when scaling
+    private static final int ATLAS_PADDING = 1;
+
+    // The size (in pixels) each sprite of SpriteId.FILES is drawn at
+    private static final int[][] ATLAS_SIZES = {
+        {36, 90},
+        {36, 90}, {36, 90}, {36, 90}, {36, 90},
+        {36, 90}, {36, 90}, {36, 90}, {36, 90},
+        {36, 90}, {36, 90},
+        {30, 30},
+        {40, 40}
+    };
+
+    // Full images shown before the game starts, loaded along with the sprites by loadAsync
+    private static final String[] IMAGES = {"imageMain.png", "stickman.png"};
+
+    // Font sizes used by the game, created by loadAsync before the first frame
+    private static final int[] FONT_SIZES = {14, 30, 60};
+
+    private static Sprite[] spritesById = new Sprite[SpriteId.FILES.length]; // Atlas sprites by SpriteId
+    private static HashMap<String, Sprite> sprites = new HashMap<>(); // Sprites by name
+    private static HashMap<String, Image> images = new HashMap<>(); // Full images by file name
+    private static HashMap<Integer, Font> fonts = new HashMap<>(); // Fonts by size
+    private static WritableImage atlas; // The texture atlas, null until it is built
+
+    private static long hits; // Number of lookups answered from the cache
+    private static long misses; // Number of lookups that had to load an asset
+    private static long bytes; // Number of bytes held by decoded images
+
+    private static boolean loading; // True while loadAsync is decoding
+    private static ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0); // Fraction of the assets decoded
+    private static ReadOnlyBooleanWrapper ready = new ReadOnlyBooleanWrapper(false); // True once the atlas is built
+
+    /**
+     * Loads all the sprites of the game and packs them into the atlas.
+     * Calling this method more than once has no effect. If loadAsync is still
+     * decoding, the sprites are decoded again here and its result is dropped.
+     */
+    public static void preload() {
+        if (atlas != null) {
+            return;
+        }
+        GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+        event.begin();
+
+        // Decode every frame at the resolution it is stored at in the atlas
+        Image[] frames = new Image[SpriteId.FILES.length];
+        for (int i = 0; i < SpriteId.FILES.length; i++) {
+            frames[i] = new Image(SpriteId.FILES[i], ATLAS_SIZES[i][0] * ATLAS_SCALE,
+                    ATLAS_SIZES[i][1] * ATLAS_SCALE, false, true);
+            misses++;
+        }
+        buildAtlas(frames, event);
+        loading = false;
+        progress.set(1);
+        ready.set(true);
+    }//end preload
+
+    /**
+     * Starts decoding every sprite and the images of IMAGES in the background,
+     * in parallel, then builds the atlas and creates the fonts of the game on
+     * the JavaFX thread once they are all decoded. Must be called on the
+     * JavaFX application thread. Calling this method more than once, or after
+     * preload, has no effect.
+     */
+    public static void loadAsync() {
+        if (atlas != null || loading) {
+            return;
+        }
+        loading = true;
+        GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+        event.begin();
+
+        Image[] frames = new Image[SpriteId.FILES.length];
+        Image[] all = new Image[frames.length + IMAGES.length];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Image(SpriteId.FILES[i], ATLAS_SIZES[i][0] * ATLAS_SCALE,
+                    ATLAS_SIZES[i][1] * ATLAS_SCALE, false, true, true);
+            all[i] = frames[i];
+            misses++;
+        }
+        for (int i = 0; i < IMAGES.length; i++) {
+            Image image = images.get(IMAGES[i]);
+            if (image == null) {
+                image = new Image(IMAGES[i], true);
+                images.put(IMAGES[i], image);
+                misses++;
+            }
+            all[frames.length + i] = image;
+        }
+
+        // Follows the decoding of every image and finishes once they are all done
+        InvalidationListener listener = observable -> {
+            if (!loading) {
+                return;
+            }
+            double done = 0;
+            for (Image image : all) {
+                done += image.getProgress();
+            }
+            progress.set(Math.min(done / all.length, 0.99));
+            if (done < all.length) {
+                return;
+            }
+            loading = false;
+            for (int i = 0; i < IMAGES.length; i++) {
+                bytes += 4L * (long) all[frames.length + i].getWidth() * (long) all[frames.length + i].getHeight();
+            }
+            for (Image frame : frames) {
+                if (frame.isError()) {
+                    preload(); // Decodes again on this thread, reporting the broken file
+                    return;
+                }
+            }
+            buildAtlas(frames, event);
+            for (int size : FONT_SIZES) {
+                getFont(size);
+            }
+            progress.set(1);
+            ready.set(true);
+        };
+        for (Image image : all) {
+            image.progressProperty().addListener(listener);
+        }
+        listener.invalidated(null); // Some images may already be decoded
+    }//end loadAsync
+
+    /**
+     * Packs decoded frames into the atlas and registers a sprite for each one.
+     *
+     * @param frames the frames of SpriteId.FILES, decoded at their atlas size
+     * @param event  the event timing the loading, committed once the atlas is built
+     */
+    private static void buildAtlas(Image[] frames, GameEvents.AssetLoad event) {
+        // Lay the frames out in rows (shelf packing)
+        int[] positionX = new int[frames.length];
+        int[] positionY = new int[frames.length];
+        int rowX = 0, rowY = 0, rowHeight = 0, atlasWidth = 0;
+        for (int i = 0; i < frames.length; i++) {
+            int width = (int) frames[i].getWidth();
+            int height = (int) frames[i].getHeight();
+            if (rowX > 0 && rowX + width > ATLAS_MAX_WIDTH) {
+                rowY += rowHeight + ATLAS_PADDING;
+                rowX = 0;
+                rowHeight = 0;
+            }
+            positionX[i] = rowX;
+            positionY[i] = rowY;
+            rowX += width + ATLAS_PADDING;
+            rowHeight = Math.max(rowHeight, height);
+            atlasWidth = Math.max(atlasWidth, rowX);
+        }
+        int atlasHeight = rowY + rowHeight;
+
+        // Copy the pixels of every frame into the atlas and register its region
+        atlas = new WritableImage(Math.max(atlasWidth, 1), Math.max(atlasHeight, 1));
+        PixelWriter writer = atlas.getPixelWriter();
+        for (int i = 0; i < frames.length; i++) {
+            int width = (int) frames[i].getWidth();
+            int height = (int) frames[i].getHeight();
+            writer.setPixels(positionX[i], positionY[i], width, height, frames[i].getPixelReader(), 0, 0);
+            spritesById[i] = new Sprite(SpriteId.FILES[i], atlas, positionX[i], positionY[i], width, height);
+            sprites.put(SpriteId.FILES[i], spritesById[i]);
+        }
+        bytes += 4L * atlasWidth * atlasHeight;
+        if (event.shouldCommit()) {
+            event.name = "atlas";
+            event.kind = "atlas";
+            event.bytes = 4L * atlasWidth * atlasHeight;
+            event.commit();
+        }
+    }//end buildAtlas
+
+    /**
+     * Returns the atlas sprite with a given identifier.
+     *
+     * @param id one of the SpriteId constants
+     * @return the shared sprite
+     */
+    public static Sprite getSprite(int id) {
+        if (atlas == null) {
+            preload();
+        }
+        hits++;
+        return spritesById[id];
+    }//end getSprite
+
+    /**
+     * Returns the sprite registered under a name.
+     * Names are the file names of the images (for example "star.png"). Images
+     * that are not part of the atlas are loaded on first use and wrapped in a
+     * sprite covering the whole image.
+     *
+     * @param name the name of the sprite
+     * @return the shared sprite
+     */
+    public static Sprite getSprite(String name) {
+        if (atlas == null) {
+            preload();
+        }
+        Sprite sprite = sprites.get(name);
+        if (sprite != null) {
+            hits++;
+            return sprite;
+        }
+        Image image = getImage(name);
+        sprite = new Sprite(name, image, 0, 0, image.getWidth(), image.getHeight());
+        sprites.put(name, sprite);
+        return sprite;
+    }//end getSprite
+
+    /**
+     * Returns an image at its full resolution, loading it on first use.
+     *
+     * @param name the file name of the image
+     * @return the shared image
+     */
+    public static Image getImage(String name) {
+        Image image = images.get(name);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        misses++;
+        GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+        event.begin();
+        image = new Image(name);
+        bytes += 4L * (long) image.getWidth() * (long) image.getHeight();
+        images.put(name, image);
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.kind = "image";
+            event.bytes = 4L * (long) image.getWidth() * (long) image.getHeight();
+            event.commit();
+        }
+        return image;
+    }//end getImage
+
+    /**
+     * Returns the default font at a given size, creating it on first use.
+     *
+     * @param size the size of the font
+     * @return the shared font
+     */
+    public static Font getFont(int size) {
+        Font font = fonts.get(size);
+        if (font != null) {
+            hits++;
+            return font;
+        }
+        misses++;
+        GameEvents.AssetLoad event = new GameEvents.AssetLoad();
+        event.begin();
+        font = new Font(size);
+        fonts.put(size, font);
+        if (event.shouldCommit()) {
+            event.name = "font " + size;
+            event.kind = "font";
+            event.commit();
+        }
+        return font;
+    }//end getFont
+
+    /**
+     * Gets the fraction of the assets decoded so far by loadAsync or preload.
+     *
+     * @return a property going from 0 to 1
+     */
+    public static ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }//end progressProperty
+
+    /**
+     * Tells when every asset is decoded and the atlas is built.
+     *
+     * @return a property that becomes true once the game can be drawn without loading
+     */
+    public static ReadOnlyBooleanProperty readyProperty() {
+        return ready.getReadOnlyProperty();
+    }//end readyProperty
+
+    // Getters for the cache statistics
+    public static long getHits() {
+        return hits;
+    }//end getHits
+
+    public static long getMisses() {
+        return misses;
+    }//end getMisses
+
+    public static long getBytes() {
+        return bytes;
+    }//end getBytes
+
+}//end class
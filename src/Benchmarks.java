@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * A benchmark suite for the hot paths of the simulation.
+ *
+ * Each benchmark is warmed up, then run repeatedly for a fixed time. The suite
+ * reports the throughput (operations per second), the average time of one
+ * operation and the number of bytes allocated per operation and per second,
+ * so the scaling of the game can be tracked from one release to the next.
+ *
+ * Every benchmark runs on Levels.LEVEL_1 and on synthetic levels made by
+ * repeating it 10, 100 and 1000 times, with the enemies of the level and with
+ * a crowd of extra enemies spread over the chunks the camera sees, then on
+ * large levels made up by a LevelGenerator with a fixed seed, so every run
+ * measures the same workloads. Only the enemies of the installed chunks are
+ * in the game, so the crowd goes where the camera is; the largest crowd is
+ * above Game.PARALLEL_THRESHOLD, so the enemies are updated in parallel. The
+ * enemies column gives the number of enemies in the game. The bytes allocated
+ * are summed over every thread, so they include the work of the threads that
+ * update the enemies in parallel and build chunks in the background.
+ *
+ * The suite does not need JavaFX. Run it with a fixed heap to get stable
+ * numbers, for example:
+ *
+ *     java -Xms2g -Xmx2g Benchmarks [filter] [warmupMs] [measureMs]
+ *
+ * where filter only keeps the benchmarks whose name contains it.
+ */
+public class Benchmarks {
+
+    private static final double STEP = 1.0 / 120; // Simulation step used by the benchmarks
+    private static final int[] SCALES = {1, 10, 100, 1000}; // Widths of the levels, in copies of LEVEL_1
+    private static final int[] CROWDS = {0, 100, 2 * Game.PARALLEL_THRESHOLD}; // Enemies added around the camera
+    private static final int WAVE = 256; // Enemies spawned and despawned by the spawnWave benchmark
+    private static final int[][] GENERATED = { // Columns, enemies and stars of the generated levels
+        {100_000, 5_000, 2_000}, {1_000_000, 50_000, 20_000}
+    };
+    private static final long GENERATOR_SEED = 1; // Seed of the generated levels
+
+    private static volatile double sink; // Keeps the JIT from removing the measured work
+
+    /**
+     * A piece of work measured by the suite.
+     */
+    private interface Operation {
+        void run();
+    }//end interface
+
+    /**
+     * Runs the suite.
+     *
+     * @param args an optional name filter, warm-up time and measurement time in milliseconds
+     */
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        long warmup = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long measure = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        System.out.printf("%-24s %8s %8s %14s %14s %12s %12s%n", "benchmark", "columns", "enemies",
+                "ops/s", "ns/op", "B/op", "MB/s");
+        for (int scale : SCALES) {
+            for (int crowd : CROWDS) {
+                runLevel(new StringLevel(scale(Levels.LEVEL_1, scale)), crowd, filter, warmup, measure);
+            }
+        }
+        for (int[] size : GENERATED) {
+            runLevel(new LevelGenerator(size[0], size[1], size[2], GENERATOR_SEED), 0, filter, warmup, measure);
+        }
+    }//end main
+
+    /**
+     * Runs every benchmark on one level, with a crowd of extra enemies.
+     */
+    private static void runLevel(LevelSource level, int crowd, String filter, long warmup, long measure) {
+        int columns = level.getColumns();
+
+        Game updated = newGame(level, crowd);
+        int enemies = updated.getEnemyCount();
+        bench("update", columns, enemies, filter, warmup, measure, () -> {
+            updated.update(STEP);
+            sink += updated.getCandidatePairs();
+        });
+
+        Game collided = newGame(level, crowd);
+        bench("checkCollisions", columns, enemies, filter, warmup, measure, () -> {
+            collided.checkCollisions();
+            sink += collided.getCandidatePairs();
+        });
+
+        Game hurt = newGame(level, crowd);
+        bench("checkCollisionLostLife", columns, enemies, filter, warmup, measure, () -> {
+            hurt.checkCollisionLostLife(hurt.getHazardGrid());
+            sink += hurt.getCandidatePairs();
+        });
+
+        // Narrow phase only: one character against every platform in memory
+        Game narrow = newGame(level, crowd);
+        ArrayList<Platform> platforms = new ArrayList<>();
+        for (LevelChunk chunk : narrow.getChunks()) {
+            for (Platform platform : chunk.getPlatforms()) {
+                platforms.add(platform);
+            }
+        }
+        Stickman stickman = narrow.getStickman();
+        bench("Stickman.collision", columns, enemies, filter, warmup, measure, () -> {
+            for (int i = 0; i < platforms.size(); i++) {
+                stickman.collision(platforms.get(i));
+            }
+            sink += stickman.getLeft();
+        });
+        Enemy enemy = new Enemy(new EntityStore(), narrow.getLevelWidth(), 600, 0, stickman,
+                narrow.getFlowField(), new GameRandom(1));
+        bench("Enemy.collision", columns, enemies, filter, warmup, measure, () -> {
+            for (int i = 0; i < platforms.size(); i++) {
+                enemy.collision(platforms.get(i));
+            }
+            sink += enemy.getLeft();
+        });
+
+        // Physics of every moving object, without their behaviors
+        Game integrated = newGame(level, crowd);
+        EntityStore bodies = integrated.getBodies();
+        bench("EntityStore.integrate", columns, enemies, filter, warmup, measure, () -> {
+            bodies.integrate(STEP);
+            sink += bodies.size();
+        });
+
+        // Search of the flow field from the stickman, as when it changes tile
+        Game searched = newGame(level, crowd);
+        FlowField field = searched.getFlowField();
+        ChunkStreamer streamer = searched.getStreamer();
+        Stickman runner = searched.getStickman();
+        double start = runner.getLeft();
+        bench("FlowField.update", columns, enemies, filter, warmup, measure, () -> {
+            runner.setX(runner.getLeft() == start ? start + World.TILE_SIZE : start);
+            field.update(runner, streamer.getFirstColumn(), streamer.getEndColumn());
+            sink += field.getSearches();
+        });
+        runner.setX(start);
+
+        // The same, with the window of the field moving by a column, as when a chunk is installed
+        int[] shift = {0};
+        bench("FlowField.cover", columns, enemies, filter, warmup, measure, () -> {
+            shift[0] ^= 1;
+            field.update(runner, streamer.getFirstColumn() + shift[0], streamer.getEndColumn());
+            sink += field.getTilesRead();
+        });
+
+        // A wave of enemies taken from the pool and given back
+        Game waves = newGame(level, crowd);
+        Enemy[] wave = new Enemy[WAVE];
+        bench("spawnWave", columns, enemies, filter, warmup, measure, () -> {
+            for (int i = 0; i < WAVE; i++) {
+                wave[i] = waves.spawnEnemy(600 + i, 0);
+            }
+            for (int i = WAVE - 1; i >= 0; i--) {
+                waves.despawnEnemy(wave[i]);
+            }
+            sink += waves.getEnemyPool().getSize();
+        });
+
+        // Installing the chunks around the camera again only spawns the enemies of the level
+        Game initialized = new Game(level);
+        bench("initializeLevel", columns, enemies, filter, warmup, measure, () -> {
+            initialized.initializeLevel();
+            sink += initialized.getEnemyCount();
+        });
+
+        // The full state of a game, encoded for a save then read back into another game
+        Game saved = newGame(level, crowd);
+        for (int i = 0; i < 120; i++) {
+            saved.update(STEP);
+        }
+        SaveGame saveGame = new SaveGame();
+        bench("SaveGame.encode", columns, enemies, filter, warmup, measure, () -> {
+            sink += saveGame.encode(saved);
+        });
+        Game loaded = new Game(level);
+        saveGame.encode(saved);
+        bench("SaveGame.decode", columns, enemies, filter, warmup, measure, () -> {
+            try {
+                saveGame.decode(loaded);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sink += loaded.getEnemyCount();
+        });
+    }//end runLevel
+
+    /**
+     * Creates a game and spreads a crowd of extra enemies over the columns of
+     * the chunks installed around the camera, from the top of the screen.
+     */
+    private static Game newGame(LevelSource level, int crowd) {
+        Game game = new Game(level);
+        ChunkStreamer streamer = game.getStreamer();
+        double left = streamer.getFirstColumn() * World.TILE_SIZE;
+        double width = (streamer.getEndColumn() - streamer.getFirstColumn() - 1) * World.TILE_SIZE;
+        for (int i = 0; i < crowd; i++) {
+            game.spawnEnemy(left + width * i / crowd, 0);
+        }
+        return game;
+    }//end newGame
+
+    /**
+     * Warms up and measures one operation, then prints its results.
+     */
+    private static void bench(String name, int columns, int enemies, String filter, long warmup,
+            long measure, Operation operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        loop(operation, warmup);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = loop(operation, measure);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        double seconds = elapsed * 1e-9;
+        System.out.printf("%-24s %8d %8d %14.1f %14.1f %12.1f %12.1f%n", name, columns, enemies,
+                ops / seconds, (double) elapsed / ops, (double) allocated / ops,
+                allocated / seconds / (1024 * 1024));
+    }//end bench
+
+    /**
+     * Runs an operation over and over for a given time.
+     *
+     * @return the number of times the operation ran
+     */
+    private static long loop(Operation operation, long millis) {
+        long end = System.nanoTime() + millis * 1_000_000;
+        long ops = 0;
+        do {
+            operation.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }//end loop
+
+    /**
+     * Returns the number of bytes allocated so far by the live threads, or 0
+     * if the JVM cannot tell. A thread that ends during a benchmark takes its
+     * bytes with it, so the result is a lower bound when threads come and go.
+     */
+    private static long allocatedBytes() {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            var allocations = (com.sun.management.ThreadMXBean) threads;
+            long total = 0;
+            for (long bytes : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) {
+                    total += bytes; // -1 for a thread that ended since the ids were read
+                }
+            }
+            return total;
+        }
+        return 0;
+    }//end allocatedBytes
+
+    /**
+     * Builds a level made of copies of another level placed side by side.
+     *
+     * @param level  the level to repeat
+     * @param copies the number of copies
+     * @return the wider level
+     */
+    public static String[] scale(String[] level, int copies) {
+        String[] scaled = new String[level.length];
+        for (int i = 0; i < level.length; i++) {
+            scaled[i] = level[i].repeat(copies);
+        }
+        return scaled;
+    }//end scale
+
+}//end class
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * A level stored in a compact binary file and read through a memory mapping.
+ *
+ * The file holds, in big-endian order:
+ * <pre>
+ *   header  magic "STKL" (int), version (short), rows (short), columns (int), spawns (int)
+ *   grid    2 bits per tile (0 empty, 1 platform, 2 lava), column after column
+ *   spawns  column (int), row (short), tile (byte), unused (byte) for each enemy
+ *           and star, sorted by column then row
+ * </pre>
+ * Opening a level only maps the file: no tile is read until a chunk asks for
+ * it, so a level of a million columns opens in a few milliseconds and only the
+ * pages around the camera are ever loaded by the operating system. The
+ * buffer is only read with absolute gets, so several threads may read the
+ * level at once.
+ */
+public class BinaryLevel implements LevelSource {
+
+    public static final int MAGIC = 0x53544B4C; // "STKL"
+    public static final short VERSION = 1; // Version of the format written by this class
+    private static final int HEADER_BYTES = 16; // Size of the header
+    private static final int SPAWN_BYTES = 8; // Size of one entry of the spawn table
+    private static final char[] TERRAIN = {'0', '1', '3', '0'}; // Tile of each 2-bit grid code
+
+    private final ByteBuffer buffer; // The mapped file
+    private final int rows; // Number of rows of the level
+    private final int columns; // Number of columns of the level
+    private final int spawns; // Number of entries of the spawn table
+    private final int spawnTable; // Position of the spawn table in the file
+
+    /**
+     * Constructs a level from the bytes of a level file.
+     *
+     * @param buffer the content of the file
+     * @throws IOException if the content is not a level of a known version
+     */
+    public BinaryLevel(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a level file");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported level version " + buffer.getShort(4));
+        }
+        this.rows = buffer.getShort(6);
+        this.columns = buffer.getInt(8);
+        this.spawns = buffer.getInt(12);
+        long table = HEADER_BYTES + gridBytes(columns, rows);
+        if (rows <= 0 || columns <= 0 || spawns < 0
+                || buffer.capacity() < table + (long) spawns * SPAWN_BYTES) {
+            throw new IOException("Corrupted level file");
+        }
+        this.spawnTable = (int) table;
+    }//end constructor
+
+    /**
+     * Opens a level file by mapping it into memory.
+     *
+     * @param path the path of the file
+     * @return the level
+     * @throws IOException if the file cannot be read or is not a level
+     */
+    public static BinaryLevel open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryLevel(buffer);
+        }
+    }//end open
+
+    /**
+     * Writes a level to a file in the binary format. The level is read one
+     * column at a time, so it never has to be held in memory as a whole.
+     *
+     * @param level the level to write
+     * @param path  the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(LevelSource level, Path path) throws IOException {
+        int rows = level.getRows();
+        int columns = level.getColumns();
+        if (rows > Short.MAX_VALUE) {
+            throw new IOException("Too many rows: " + rows);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+
+            // Room for the header, which is written at the end once the spawns are counted
+            out.position(HEADER_BYTES);
+
+            // Grid of the terrain, column after column
+            int spawns = 0;
+            int bits = 0, packed = 0;
+            for (int column = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++) {
+                    char tile = level.getTile(column, row);
+                    int code = tile == '1' ? 1 : tile == '3' ? 2 : 0;
+                    if (tile == '2' || tile == '4') {
+                        spawns++;
+                    }
+                    packed |= code << bits;
+                    bits += 2;
+                    if (bits == 8) {
+                        put(channel, out, (byte) packed);
+                        bits = 0;
+                        packed = 0;
+                    }
+                }
+            }
+            if (bits > 0) {
+                put(channel, out, (byte) packed);
+            }
+
+            // Table of the enemies and stars, in the order the grid was written
+            for (int column = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++) {
+                    char tile = level.getTile(column, row);
+                    if (tile == '2' || tile == '4') {
+                        if (out.remaining() < SPAWN_BYTES) {
+                            flush(channel, out);
+                        }
+                        out.putInt(column).putShort((short) row).put((byte) tile).put((byte) 0);
+                    }
+                }
+            }
+            flush(channel, out);
+
+            out.putInt(MAGIC).putShort(VERSION).putShort((short) rows).putInt(columns).putInt(spawns);
+            out.flip();
+            channel.write(out, 0);
+        }
+    }//end write
+
+    /**
+     * Adds one byte to the output buffer, writing the buffer out when it is full.
+     */
+    private static void put(FileChannel channel, ByteBuffer out, byte value) throws IOException {
+        if (!out.hasRemaining()) {
+            flush(channel, out);
+        }
+        out.put(value);
+    }//end put
+
+    /**
+     * Writes the content of the output buffer to the file and empties it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }//end flush
+
+    /**
+     * Gets the number of bytes of the grid of a level.
+     */
+    private static long gridBytes(int columns, int rows) {
+        return (2L * columns * rows + 7) / 8;
+    }//end gridBytes
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }//end getColumns
+
+    @Override
+    public int getRows() {
+        return rows;
+    }//end getRows
+
+    @Override
+    public char getTile(int column, int row) {
+        long index = (long) column * rows + row;
+        int code = (buffer.get(HEADER_BYTES + (int) (index >>> 2)) >>> ((int) (index & 3) * 2)) & 3;
+        if (code != 0) {
+            return TERRAIN[code];
+        }
+        return getSpawn(column, row);
+    }//end getTile
+
+    /**
+     * Computes the CRC-32C of the whole file, which takes a few milliseconds
+     * for a level of a million columns.
+     */
+    @Override
+    public long fingerprint() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, buffer.capacity()));
+        return crc.getValue();
+    }//end fingerprint
+
+    /**
+     * Looks up an enemy or a star in the spawn table with a binary search.
+     *
+     * @return the tile of the spawn, or '0' if there is none at this position
+     */
+    private char getSpawn(int column, int row) {
+        int low = 0, high = spawns - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = spawnTable + middle * SPAWN_BYTES;
+            int entryColumn = buffer.getInt(entry);
+            int compare = entryColumn != column ? Integer.compare(entryColumn, column)
+                    : Integer.compare(buffer.getShort(entry + 4), row);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return (char) buffer.get(entry + 6);
+            }
+        }
+        return '0';
+    }//end getSpawn
+
+}//end class
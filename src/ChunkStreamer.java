@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the chunks of a level around the camera in memory.
+ *
+ * The level is split into chunks of a fixed number of columns. The chunks
+ * seen by the camera, plus a margin on each side, are installed: the listener
+ * is told about them so they take part in the simulation. Chunks further away,
+ * up to a prefetch distance, are built ahead of time on a background thread.
+ * Chunks left behind are evicted. Memory use therefore depends on the size of
+ * the screen and not on the width of the level.
+ *
+ * Which chunks are installed only depends on the camera position, never on how
+ * fast the background thread is: a chunk that is needed before it was
+ * prefetched is built immediately.
+ */
+public class ChunkStreamer {
+
+    // Builds chunks ahead of the camera, shared by every streamer
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chunk-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Receives the chunks that enter and leave the simulation.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a chunk starts taking part in the simulation.
+         *
+         * @param chunk the installed chunk
+         */
+        void chunkInstalled(LevelChunk chunk);
+
+        /**
+         * Called when a chunk stops taking part in the simulation.
+         *
+         * @param chunk the evicted chunk
+         */
+        void chunkEvicted(LevelChunk chunk);
+    }//end interface
+
+    private final LevelSource level; // The level being streamed
+    private final int chunkColumns; // Number of columns of a chunk
+    private final int chunkCount; // Number of chunks of the level
+    private final int margin; // Chunks installed on each side of the camera
+    private final int prefetch; // Chunks built in the background beyond the margin
+    private final Listener listener; // Told about installed and evicted chunks
+
+    private ArrayList<LevelChunk> installed = new ArrayList<>(); // Installed chunks, from left to right
+    private HashMap<Integer, Future<LevelChunk>> prefetched = new HashMap<>(); // Chunks built ahead, by index
+    private int firstInstalled = 0, lastInstalled = -1; // Range of installed chunk indices
+
+    private long synchronousLoads; // Chunks that had to be built on the simulation thread
+    private long backgroundLoads; // Chunks that were built ahead of time
+
+    /**
+     * Constructs a streamer. No chunk is installed until the first update.
+     *
+     * @param level        the level to stream
+     * @param chunkColumns the number of columns of a chunk
+     * @param margin       the number of chunks installed on each side of the camera
+     * @param prefetch     the number of chunks built in the background beyond the margin
+     * @param listener     the listener told about installed and evicted chunks
+     */
+    public ChunkStreamer(LevelSource level, int chunkColumns, int margin, int prefetch, Listener listener) {
+        this.level = level;
+        this.chunkColumns = chunkColumns;
+        this.chunkCount = (level.getColumns() + chunkColumns - 1) / chunkColumns;
+        this.margin = margin;
+        this.prefetch = prefetch;
+        this.listener = listener;
+    }//end constructor
+
+    /**
+     * Installs the chunks around the camera, evicts the others and starts
+     * building the chunks ahead in the background.
+     *
+     * @param xLvlOffset the horizontal offset of the camera
+     */
+    public void update(double xLvlOffset) {
+        double chunkWidth = chunkColumns * World.TILE_SIZE;
+        int first = Math.max(0, (int) Math.floor(xLvlOffset / chunkWidth) - margin);
+        int last = Math.min(chunkCount - 1, (int) Math.floor((xLvlOffset + World.WIDTH) / chunkWidth) + margin);
+        if (first == firstInstalled && last == lastInstalled) {
+            return;
+        }
+
+        // Evict the chunks that left the range
+        Iterator<LevelChunk> iterator = installed.iterator();
+        while (iterator.hasNext()) {
+            LevelChunk chunk = iterator.next();
+            if (chunk.getIndex() < first || chunk.getIndex() > last) {
+                iterator.remove();
+                listener.chunkEvicted(chunk);
+            }
+        }
+
+        // Install the chunks that entered the range, keeping the list sorted
+        ArrayList<LevelChunk> sorted = new ArrayList<>(last - first + 1);
+        int next = 0;
+        for (int i = first; i <= last; i++) {
+            if (next < installed.size() && installed.get(next).getIndex() == i) {
+                sorted.add(installed.get(next++));
+            } else {
+                LevelChunk chunk = load(i);
+                sorted.add(chunk);
+                listener.chunkInstalled(chunk);
+            }
+        }
+        installed = sorted;
+        firstInstalled = first;
+        lastInstalled = last;
+
+        // Forget the prefetched chunks that are now too far away
+        prefetched.entrySet().removeIf(entry -> {
+            boolean far = entry.getKey() < first - prefetch || entry.getKey() > last + prefetch;
+            if (far) {
+                entry.getValue().cancel(false);
+            }
+            return far;
+        });
+
+        // Build the chunks ahead of the camera (and just behind it) in the background
+        for (int i = Math.max(0, first - prefetch); i <= Math.min(chunkCount - 1, last + prefetch); i++) {
+            if ((i < first || i > last) && !prefetched.containsKey(i)) {
+                int index = i;
+                prefetched.put(i, LOADER.submit(() -> new LevelChunk(level, index, chunkColumns)));
+            }
+        }
+    }//end update
+
+    /**
+     * Hands over a chunk built elsewhere, such as by a LevelLoader, so it does
+     * not have to be built again when the camera reaches it.
+     *
+     * @param chunk a chunk of the streamed level
+     */
+    public void offer(LevelChunk chunk) {
+        Future<LevelChunk> previous = prefetched.put(chunk.getIndex(), CompletableFuture.completedFuture(chunk));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }//end offer
+
+    /**
+     * Evicts every installed chunk and drops the prefetched ones.
+     */
+    public void clear() {
+        for (LevelChunk chunk : installed) {
+            listener.chunkEvicted(chunk);
+        }
+        installed = new ArrayList<>();
+        firstInstalled = 0;
+        lastInstalled = -1;
+        for (Future<LevelChunk> future : prefetched.values()) {
+            future.cancel(false);
+        }
+        prefetched.clear();
+    }//end clear
+
+    /**
+     * Gets a chunk, from the prefetched chunks if it was built ahead of time.
+     */
+    private LevelChunk load(int index) {
+        Future<LevelChunk> future = prefetched.remove(index);
+        if (future != null && !future.cancel(false)) {
+            try {
+                LevelChunk chunk = future.get(); // Already built, or being built right now
+                backgroundLoads++;
+                return chunk;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not build chunk " + index, e.getCause());
+            }
+        }
+        synchronousLoads++;
+        return new LevelChunk(level, index, chunkColumns);
+    }//end load
+
+    /**
+     * Checks whether the chunk containing an x-coordinate is installed.
+     *
+     * @param x the x-coordinate, in pixels
+     * @return true if the chunk is installed
+     */
+    public boolean isInstalled(double x) {
+        int index = (int) Math.floor(x / (chunkColumns * World.TILE_SIZE));
+        return index >= firstInstalled && index <= lastInstalled;
+    }//end isInstalled
+
+    /**
+     * Gets the first column of the installed chunks.
+     *
+     * @return the first column in the simulation
+     */
+    public int getFirstColumn() {
+        return firstInstalled * chunkColumns;
+    }//end getFirstColumn
+
+    /**
+     * Gets the column after the last column of the installed chunks.
+     *
+     * @return the end of the columns in the simulation, equal to
+     *         getFirstColumn() when no chunk is installed
+     */
+    public int getEndColumn() {
+        return Math.max(firstInstalled, Math.min(level.getColumns(), (lastInstalled + 1) * chunkColumns));
+    }//end getEndColumn
+
+    // Getters
+    public ArrayList<LevelChunk> getInstalled() {
+        return installed;
+    }//end getInstalled
+
+    public int getChunkColumns() {
+        return chunkColumns;
+    }//end getChunkColumns
+
+    public int getChunkCount() {
+        return chunkCount;
+    }//end getChunkCount
+
+    public int getPrefetchedCount() {
+        return prefetched.size();
+    }//end getPrefetchedCount
+
+    public long getSynchronousLoads() {
+        return synchronousLoads;
+    }//end getSynchronousLoads
+
+    public long getBackgroundLoads() {
+        return backgroundLoads;
+    }//end getBackgroundLoads
+
+}//end class
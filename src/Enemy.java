@@ -1,58 +1,123 @@
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-
+import java.nio.ByteBuffer;
 
 /**
  * The Enemy class represents an enemy character in the game.
- * Enemies move towards the player's character (Stickman), jump when above the player,
- * and interact with platforms and level boundaries.
+ * Enemies follow the FlowField to the player's character (Stickman), walking
+ * and jumping around the platforms on the way, and interact with platforms and
+ * level boundaries. Where the field knows no way, they run straight at the
+ * player and jump when below it.
  */
-public class Enemy extends GameObject{
+public final class Enemy extends GameObject{
 
     private final double WIDTH = 36; // Width of the enemy character in pixels
     private final double HEIGHT = 90; // Height of the enemy character in pixels
     private final double MAX_VELOCITY = 200; // Maximum speed limit for enemy movement
+    static final int STATE_BYTES = GameObject.STATE_BYTES + 1 + 8; // Bytes written by writeState
     private double maxVelocity; // Actual maximum speed (randomized for variation)
     private double levelWidth; // Width of the level in pixels
     private Stickman stickman; // Reference to the player's character for collision and movement logic
+    private FlowField flowField; // The way to the stickman, shared by every enemy
     private boolean hasJumped; // Tracks if the enemy is currently in a jump to prevent double jumping
 
      /**
      * Constructs an Enemy object.
      *
+     * @param store      The store holding the enemy.
      * @param levelWidth The width of the level in pixels.
      * @param x          The initial x-coordinate of the enemy.
      * @param y          The initial y-coordinate of the enemy.
      * @param stickman   A reference to the Stickman character for collision detection and interaction.
+     * @param flowField  The way to the stickman, shared by every enemy.
+     * @param random     The generator choosing the maximum speed of the enemy.
+     */
+    public Enemy(EntityStore store, Double levelWidth, double x, double y, Stickman stickman,
+            FlowField flowField, GameRandom random) {
+        this(store, levelWidth, stickman, flowField);
+        spawn(x, y, random);
+    }//end constructor
+
+     /**
+     * Constructs an Enemy object that is not placed yet, for an ObjectPool.
+     * It takes its place in the level when spawn is called.
+     *
+     * @param store      The store holding the enemy.
+     * @param levelWidth The width of the level in pixels.
+     * @param stickman   A reference to the Stickman character for collision detection and interaction.
+     * @param flowField  The way to the stickman, shared by every enemy.
      */
-    public Enemy(Double levelWidth, double x, double y, Stickman stickman) {
-        this.vx = 0; // Initial horizontal velocity
-        this.vy = 0; // Initial vertical velocity
-        this.x = x; // Initial x-position
-        this.y = y; // Initial y-position
-        this.ay = 1200; // Constant vertical acceleration (gravity)
-        this.ax = 0; // Initial horizontal acceleration
-        this.w = WIDTH; // Width of the enemy
-        this.h = HEIGHT; // Height of the enemy
-        this.image = new Image("enemyLeft.png"); // Initial image facing left
+    public Enemy(EntityStore store, Double levelWidth, Stickman stickman, FlowField flowField) {
+        super(store); // Take a slot in the store
         this.levelWidth = levelWidth; // Level width for boundary checking
         this.stickman = stickman; // Reference to the Stickman character
-        this.maxVelocity = MAX_VELOCITY * Math.random(); // Randomized maximum velocity for variety
-        this.hasJumped = false; // Enemy starts grounded
+        this.flowField = flowField; // Shared way to the Stickman
     }//end constructor
 
+     /**
+     * Places the enemy in the level, at rest, with a new maximum speed.
+     *
+     * @param x      The initial x-coordinate of the enemy.
+     * @param y      The initial y-coordinate of the enemy.
+     * @param random The generator choosing the maximum speed of the enemy.
+     */
+    public void spawn(double x, double y, GameRandom random) {
+        store.vx[slot] = 0; // Initial horizontal velocity
+        store.vy[slot] = 0; // Initial vertical velocity
+        store.x[slot] = x; // Initial x-position
+        store.y[slot] = y; // Initial y-position
+        store.ay[slot] = 1200; // Constant vertical acceleration (gravity)
+        store.ax[slot] = 0; // Initial horizontal acceleration
+        store.w[slot] = WIDTH; // Width of the enemy
+        store.h[slot] = HEIGHT; // Height of the enemy
+        this.sprite = SpriteId.ENEMY_LEFT; // Initial sprite facing left
+        this.maxVelocity = MAX_VELOCITY * random.nextDouble(); // Randomized maximum velocity for variety
+        this.hasJumped = false; // Enemy starts grounded
+        savePreviousState(); // Not drawn moving from its last position
+    }//end spawn
+
     
      /**
-     * Updates the enemy's position and velocity.
+     * Updates the enemy's velocity. Its position was already integrated by the store.
      *
      * @param deltaTime The time elapsed since the last update, used for smooth movement.
      */
     public void update(double deltaTime) {
-        super.update(deltaTime); // Call to GameObject's update for basic physics
         movementEnemy(deltaTime); // Update enemy-specific movement behavior
     }//end update
 
     
+    /**
+     * Sets the width of the level the enemy moves in.
+     *
+     * @param levelWidth The width of the level in pixels.
+     */
+    public void setLevelWidth(double levelWidth) {
+        this.levelWidth = levelWidth;
+    }//end setLevelWidth
+
+    /**
+     * Writes the state of the enemy, with its jump and its maximum speed (see SaveGame).
+     *
+     * @param out the buffer receiving the state
+     */
+    @Override
+    void writeState(ByteBuffer out) {
+        super.writeState(out);
+        out.put((byte) (hasJumped ? 1 : 0));
+        out.putDouble(maxVelocity);
+    }//end writeState
+
+    /**
+     * Reads back the state written by writeState.
+     *
+     * @param in the buffer holding the state
+     */
+    @Override
+    void readState(ByteBuffer in) {
+        super.readState(in);
+        hasJumped = in.get() != 0;
+        maxVelocity = in.getDouble();
+    }//end readState
+
     /**
      * Controls the enemy's movement behavior, including following the Stickman
      * and managing jumping logic.
@@ -60,44 +125,67 @@ public class Enemy extends GameObject{
      * @param deltaTime The time elapsed since the last update, used for smooth movement.
      */
     public void movementEnemy(double deltaTime){
-
-        // Move towards the Stickman
-        if (this.getRight() < stickman.getLeft()) {
-            ax = 1000; // Accelerate to the right
-            image = new Image("enemyRight.png"); // Change image to face right
-        } else if (stickman.getLeft() < this.getLeft()) {
-            ax = -1000; // Accelerate to the left
-            image = new Image("enemyLeft.png"); // Change image to face left
-        }
-
-        // Jump if below the Stickman
-        if (this.getUp() > stickman.getDown() && !hasJumped) {
-            vy = -650; // Set upward velocity for the jump
-            hasJumped = true; // Prevent double jumps
+        int move = flowField.steer(this);
+        if (move == FlowField.CHASE) {
+            chase();
+        } else {
+            // Follow the way of the flow field
+            if ((move & FlowField.RIGHT) != 0) {
+                store.ax[slot] = 1000; // Accelerate to the right
+                sprite = SpriteId.ENEMY_RIGHT; // Change sprite to face right
+            } else if ((move & FlowField.LEFT) != 0) {
+                store.ax[slot] = -1000; // Accelerate to the left
+                sprite = SpriteId.ENEMY_LEFT; // Change sprite to face left
+            }
+            if ((move & FlowField.JUMP) != 0 && !hasJumped) {
+                store.vy[slot] = -650; // Set upward velocity for the jump
+                hasJumped = true; // Prevent double jumps
+            }
         }
 
          // Enforce level boundaries
-         if (y + h > Main.HEIGHT) { // Ground boundary
-            y = Main.HEIGHT - h; // Snap to the ground
+         if (store.y[slot] + store.h[slot] > World.HEIGHT) { // Ground boundary
+            store.y[slot] = World.HEIGHT - store.h[slot]; // Snap to the ground
             hasJumped = false; // Reset jumping ability
-        } else if (y < 0) { // Ceiling boundary
-            y = 0; // Snap to the ceiling
+        } else if (store.y[slot] < 0) { // Ceiling boundary
+            store.y[slot] = 0; // Snap to the ceiling
         }
 
-        if (x + w > levelWidth) { // Right level boundary
-            x = levelWidth - w; // Snap to the right edge
-        } else if (x < 0) { // Left level boundary
-            x = 0; // Snap to the left edge
+        if (store.x[slot] + store.w[slot] > levelWidth) { // Right level boundary
+            store.x[slot] = levelWidth - store.w[slot]; // Snap to the right edge
+        } else if (store.x[slot] < 0) { // Left level boundary
+            store.x[slot] = 0; // Snap to the left edge
         }
 
         // Limit horizontal velocity
-        if (vx > maxVelocity) {
-            vx = maxVelocity;
-        } else if (vx < -maxVelocity) {
-            vx = -maxVelocity;
+        if (store.vx[slot] > maxVelocity) {
+            store.vx[slot] = maxVelocity;
+        } else if (store.vx[slot] < -maxVelocity) {
+            store.vx[slot] = -maxVelocity;
         }
     }//end movementEnemy
 
+    /**
+     * Moves straight towards the Stickman and jumps when below it.
+     */
+    private void chase(){
+
+        // Move towards the Stickman
+        if (this.getRight() < stickman.getLeft()) {
+            store.ax[slot] = 1000; // Accelerate to the right
+            sprite = SpriteId.ENEMY_RIGHT; // Change sprite to face right
+        } else if (stickman.getLeft() < this.getLeft()) {
+            store.ax[slot] = -1000; // Accelerate to the left
+            sprite = SpriteId.ENEMY_LEFT; // Change sprite to face left
+        }
+
+        // Jump if below the Stickman
+        if (this.getUp() > stickman.getDown() && !hasJumped) {
+            store.vy[slot] = -650; // Set upward velocity for the jump
+            hasJumped = true; // Prevent double jumps
+        }
+    }//end chase
+
     /**
      * Handles collisions between the enemy and a platform.
      *
@@ -114,44 +202,36 @@ public class Enemy extends GameObject{
                (this.getRight() > platform.getLeft()) && 
                (this.getLeft() < platform.getRight() - 0) && 
                 this.getUp() < platform.getUp()){
-                y = platform.getUp() - h; // Snap to the top of the platform
+                store.y[slot] = platform.getUp() - store.h[slot]; // Snap to the top of the platform
+                if (store.vy[slot] > 0) {
+                    store.vy[slot] = 0; // Stop falling
+                }
+                hasJumped = false; // Landed, so the enemy can jump again
             }
             if  (this.getUp() < platform.getDown() && 
                 (this.getRight() > platform.getLeft() + 0) && 
                 (this.getLeft() < platform.getRight() - 0) && 
                  this.getDown() > platform.getDown()){
-                if((platform.getDown() + h) < Main.HEIGHT){
-                    y = platform.getDown();
-                    vy = 0;
+                if((platform.getDown() + store.h[slot]) < World.HEIGHT){
+                    store.y[slot] = platform.getDown();
+                    store.vy[slot] = 0;
                 }
             }            
             if (this.getRight() > platform.getLeft() && 
                 this.getRight() < platform.getRight() && 
                 this.getUp() < platform.getDown() && 
                 this.getDown() > platform.getUp()){
-                vx = 0;
-                x = platform.getLeft() - w;
+                store.vx[slot] = 0;
+                store.x[slot] = platform.getLeft() - store.w[slot];
                 
             }
             if (this.getLeft() < platform.getRight() && 
                 this.getLeft() > platform.getLeft() && 
                 this.getUp() < platform.getDown() && 
                 this.getDown() > platform.getUp()){
-                vx = 0;
-                x = platform.getRight();            
+                store.vx[slot] = 0;
+                store.x[slot] = platform.getRight();            
             }
         }
     }//end collision  
-
-
-    /**
-     * Renders the enemy to the screen.
-     *
-     * @param context   The GraphicsContext used for drawing.
-     * @param lvlOffset The horizontal offset for level scrolling.
-     */
-    @Override
-    public void draw(GraphicsContext context, double lvlOffset) {
-        context.drawImage(image, x - lvlOffset, y, WIDTH, HEIGHT);
-    }//end draw    
 }//end class
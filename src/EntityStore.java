@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Holds the positions, velocities, accelerations and sizes of game objects in
+ * parallel arrays (a "structure of arrays").
+ *
+ * Each GameObject owns one slot of a store. The slots in use are always
+ * packed at the start of the arrays: removing an object moves the last one
+ * into the hole (swap and pop), so adding and removing are O(1) and the
+ * physics of every object can be integrated in one loop over contiguous
+ * memory. The arrays grow when they are full, so there is no limit on the
+ * number of objects.
+ *
+ * A store is not thread-safe; it is only used by the thread that owns it.
+ */
+public class EntityStore {
+
+    private static final int INITIAL_CAPACITY = 16; // Slots of a store created without a capacity
+
+    double[] x, y; // The x and y positions of each object
+    double[] vx, vy; // The velocities along the x and y axes
+    double[] ax, ay; // The accelerations along the x and y axes
+    double[] w, h; // The width and height of each object
+    double[] prevX, prevY; // The position of each object at the start of the last update
+    boolean[] asleep; // True for the objects skipped by integrate
+    private GameObject[] owners; // The object owning each slot
+    private int size; // Number of slots in use
+
+    /**
+     * Constructs an empty store.
+     */
+    public EntityStore() {
+        this(INITIAL_CAPACITY);
+    }//end empty argument constructor
+
+    /**
+     * Constructs an empty store with room for a given number of objects.
+     *
+     * @param capacity the number of objects held before the arrays grow
+     */
+    public EntityStore(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }//end constructor
+
+    /**
+     * Gives a slot to a new object. Every value of the slot starts at zero.
+     *
+     * @param owner the object owning the slot
+     * @return the slot of the object
+     */
+    int add(GameObject owner) {
+        if (size == owners.length) {
+            allocate(size * 2);
+        }
+        int slot = size++;
+        x[slot] = 0;
+        y[slot] = 0;
+        vx[slot] = 0;
+        vy[slot] = 0;
+        ax[slot] = 0;
+        ay[slot] = 0;
+        w[slot] = 0;
+        h[slot] = 0;
+        prevX[slot] = 0;
+        prevY[slot] = 0;
+        asleep[slot] = false;
+        owners[slot] = owner;
+        return slot;
+    }//end add
+
+    /**
+     * Removes an object from the store. The last object of the store takes
+     * its slot.
+     *
+     * @param owner the object to remove
+     */
+    public void remove(GameObject owner) {
+        int slot = owner.slot;
+        if (slot < 0 || slot >= size || owners[slot] != owner) {
+            throw new IllegalArgumentException("The object is not in this store");
+        }
+        int last = --size;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            vx[slot] = vx[last];
+            vy[slot] = vy[last];
+            ax[slot] = ax[last];
+            ay[slot] = ay[last];
+            w[slot] = w[last];
+            h[slot] = h[last];
+            prevX[slot] = prevX[last];
+            prevY[slot] = prevY[last];
+            asleep[slot] = asleep[last];
+            owners[slot] = owners[last];
+            owners[slot].slot = slot;
+        }
+        owners[last] = null;
+        owner.slot = -1;
+    }//end remove
+
+    /**
+     * Updates the velocity and the position of every object that is not
+     * asleep from its acceleration and the elapsed time.
+     *
+     * @param deltaTime the time elapsed since the last update, in seconds
+     */
+    public void integrate(double deltaTime) {
+        for (int i = 0; i < size; i++) {
+            if (!asleep[i]) {
+                vx[i] += deltaTime * ax[i]; // Update velocity in the x direction
+                vy[i] += deltaTime * ay[i]; // Update velocity in the y direction
+                x[i] += deltaTime * vx[i];  // Update position in the x direction
+                y[i] += deltaTime * vy[i];  // Update position in the y direction
+            }
+        }
+    }//end integrate
+
+    /**
+     * Remembers the current position of every object as its previous position.
+     */
+    public void savePreviousState() {
+        System.arraycopy(x, 0, prevX, 0, size);
+        System.arraycopy(y, 0, prevY, 0, size);
+    }//end savePreviousState
+
+    /**
+     * Resizes every array of the store.
+     */
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        ax = grow(ax, capacity);
+        ay = grow(ay, capacity);
+        w = grow(w, capacity);
+        h = grow(h, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        asleep = asleep == null ? new boolean[capacity] : Arrays.copyOf(asleep, capacity);
+        owners = owners == null ? new GameObject[capacity] : Arrays.copyOf(owners, capacity);
+    }//end allocate
+
+    private static double[] grow(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }//end grow
+
+    // Getters
+    public int size() {
+        return size;
+    }//end size
+
+    public int capacity() {
+        return owners.length;
+    }//end capacity
+
+    public GameObject get(int slot) {
+        return owners[slot];
+    }//end get
+
+}//end class
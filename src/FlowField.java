@@ -0,0 +1,339 @@
+import java.util.Arrays;
+
+/**
+ * A map of the way to the stickman shared by every enemy.
+ *
+ * The field covers the columns of the level that take part in the simulation
+ * (the installed chunks). Its nodes are the cells an enemy can stand in: a free
+ * cell with a free cell above it for the body and a platform, or the bottom of
+ * the screen, below it. An enemy can walk to the next cell, walk off a ledge
+ * and fall to the first cell below it, or jump up to JUMP_ROWS rows and across
+ * up to JUMP_COLUMNS columns.
+ *
+ * A breadth-first search run backwards from the cell of the stickman gives
+ * every cell its distance to the stickman and the next cell on the way. The
+ * search is only run again when the stickman reaches another cell or the
+ * window of columns changes, so each enemy only reads its next move from the
+ * field: the cost of the AI does not depend on the number of enemies.
+ *
+ * The moves between the cells only depend on the tiles, so they are worked
+ * out once when the window changes and kept as lists of the cells each cell
+ * can be reached from. A search then only follows these lists. When the
+ * window moves, only the tiles of the columns that entered it are read.
+ *
+ * The field is written by the simulation thread between the enemy updates,
+ * and only read while the enemies are updated, so the enemies can use it from
+ * several threads.
+ */
+public class FlowField {
+
+    // Moves returned by steer, combined with |
+    public static final int CHASE = -1; // No way known: run straight at the stickman
+    public static final int NONE = 0; // Stay in place
+    public static final int LEFT = 1; // Accelerate to the left
+    public static final int RIGHT = 2; // Accelerate to the right
+    public static final int JUMP = 4; // Jump
+
+    // Highest and widest jump of an enemy, in tiles
+    public static final int JUMP_ROWS = 2;
+    public static final int JUMP_COLUMNS = 2;
+
+    private LevelSource level; // The level the enemies move in
+    private int rows; // Number of rows of the level
+    private int firstColumn; // First column covered by the field
+    private int columns; // Number of columns covered by the field
+    private boolean[] solid = new boolean[0]; // True for the platform cells, column after column
+    private int[] movesStart = new int[1]; // Start of the moves into each cell in movesFrom, then their end
+    private int[] movesFrom = new int[0]; // Cells that can move into each cell, cell after cell
+    private int[] distance = new int[0]; // Moves left to reach the stickman, -1 if it cannot be reached
+    private int[] next = new int[0]; // Next cell on the way to the stickman
+    private int[] queue = new int[0]; // Cells waiting to be visited by the search
+    private int target = -1; // Cell of the stickman, -1 before the first search
+    private long searches; // Number of searches run so far
+    private long tilesRead; // Number of tiles read from the level so far
+
+    /**
+     * Constructs an empty field. Nothing can be reached until the first update.
+     *
+     * @param level the level the enemies move in
+     */
+    public FlowField(LevelSource level) {
+        this.level = level;
+        this.rows = level.getRows();
+    }//end constructor
+
+    /**
+     * Moves the field to another level. Nothing can be reached until the
+     * next update.
+     *
+     * @param level the level the enemies move in
+     */
+    public void setLevel(LevelSource level) {
+        this.level = level;
+        this.rows = level.getRows();
+        firstColumn = 0;
+        columns = 0;
+        target = -1;
+    }//end setLevel
+
+    /**
+     * Brings the field up to date with the position of the stickman and the
+     * columns in the simulation. Nothing is done when neither changed.
+     *
+     * @param stickman    the object the enemies go to
+     * @param firstColumn the first column in the simulation
+     * @param endColumn   the column after the last one in the simulation
+     * @return true if the field was searched again
+     */
+    public boolean update(GameObject stickman, int firstColumn, int endColumn) {
+        boolean moved = firstColumn != this.firstColumn || endColumn - firstColumn != columns;
+        if (moved) {
+            cover(firstColumn, endColumn);
+        }
+        int cell = cellOf(stickman);
+        if (!moved && cell == target) {
+            return false;
+        }
+        target = cell;
+        search();
+        return true;
+    }//end update
+
+    /**
+     * Chooses the move of an enemy.
+     *
+     * @param enemy the enemy
+     * @return CHASE if the field knows no way from the enemy to the stickman,
+     *         otherwise a combination of LEFT, RIGHT and JUMP
+     */
+    public int steer(GameObject enemy) {
+        int cell = cellOf(enemy);
+        if (cell < 0 || distance[cell] <= 0) {
+            return CHASE; // No way, or already in the cell of the stickman
+        }
+        int to = next[cell];
+        int column = cell / rows, row = cell % rows;
+        int toColumn = to / rows, toRow = to % rows;
+        int move = toColumn > column ? RIGHT : toColumn < column ? LEFT : NONE;
+        if (toRow < row || Math.abs(toColumn - column) > 1) {
+            move |= JUMP;
+        }
+        return move;
+    }//end steer
+
+    /**
+     * Gets the number of moves from an object to the stickman.
+     *
+     * @param object the object
+     * @return the number of moves, or -1 if the stickman cannot be reached
+     */
+    public int distanceOf(GameObject object) {
+        int cell = cellOf(object);
+        return cell < 0 ? -1 : distance[cell];
+    }//end distanceOf
+
+    /**
+     * Reads the tiles of a new window of columns, keeping those of the
+     * columns it shares with the last window, and works out its moves.
+     */
+    private void cover(int first, int end) {
+        int lastFirst = firstColumn, lastEnd = firstColumn + columns;
+        firstColumn = first;
+        columns = Math.max(0, end - first);
+        int cells = columns * rows;
+        boolean[] lastSolid = solid;
+        if (solid.length < cells) {
+            solid = new boolean[cells];
+            distance = new int[cells];
+            next = new int[cells];
+            queue = new int[cells];
+            movesStart = new int[cells + 1];
+        }
+
+        // The columns both windows share move to their new place
+        int keptFirst = Math.max(first, lastFirst), keptEnd = Math.min(first + columns, lastEnd);
+        if (keptFirst < keptEnd) {
+            System.arraycopy(lastSolid, (keptFirst - lastFirst) * rows, solid, (keptFirst - first) * rows,
+                    (keptEnd - keptFirst) * rows);
+        } else {
+            keptFirst = keptEnd = first;
+        }
+        for (int c = 0; c < columns; c++) {
+            if (first + c < keptFirst || first + c >= keptEnd) {
+                for (int r = 0; r < rows; r++) {
+                    solid[c * rows + r] = level.getTile(first + c, r) == '1';
+                }
+                tilesRead += rows;
+            }
+        }
+        findMoves();
+    }//end cover
+
+    /**
+     * Lists, for every cell an enemy can stand in, the cells it can be
+     * reached from, in the order the search visits them.
+     */
+    private void findMoves() {
+        int count = 0;
+        for (int cell = 0; cell < columns * rows; cell++) {
+            movesStart[cell] = count;
+            int c = cell / rows, r = cell % rows;
+            if (!isStanding(c, r)) {
+                continue;
+            }
+
+            // Walking in from the next cell on either side
+            count = addMove(c - 1, r, count);
+            count = addMove(c + 1, r, count);
+
+            // Walking off a ledge above and falling into the cell
+            for (int above = r - 1; above >= 0 && isFree(c, above); above--) {
+                if (isFree(c, above - 1)) {
+                    count = addMove(c - 1, above, count);
+                    count = addMove(c + 1, above, count);
+                }
+            }
+
+            // Jumping up from below, or across a gap on the same row
+            for (int up = 0; up <= JUMP_ROWS; up++) {
+                for (int dc = -JUMP_COLUMNS; dc <= JUMP_COLUMNS; dc++) {
+                    if (up == 0 && Math.abs(dc) < 2) {
+                        continue; // Walking, seen above
+                    }
+                    if (canJump(c + dc, r + up, c, r)) {
+                        count = addMove(c + dc, r + up, count);
+                    }
+                }
+            }
+        }
+        movesStart[columns * rows] = count;
+    }//end findMoves
+
+    /**
+     * Adds a cell to the list of cells the current cell can be reached from,
+     * if an enemy can stand in it.
+     *
+     * @return the new number of moves
+     */
+    private int addMove(int column, int row, int count) {
+        if (!isStanding(column, row)) {
+            return count;
+        }
+        if (count == movesFrom.length) {
+            movesFrom = Arrays.copyOf(movesFrom, Math.max(64, count * 2));
+        }
+        movesFrom[count] = column * rows + row;
+        return count + 1;
+    }//end addMove
+
+    /**
+     * Runs a breadth-first search from the stickman over the moves reversed,
+     * so every cell learns the first move of its shortest way to the stickman.
+     */
+    private void search() {
+        searches++;
+        Arrays.fill(distance, 0, columns * rows, -1);
+        if (target < 0) {
+            return;
+        }
+        int head = 0, tail = 0;
+        distance[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int move = movesStart[cell]; move < movesStart[cell + 1]; move++) {
+                int from = movesFrom[move];
+                if (distance[from] < 0) {
+                    distance[from] = distance[cell] + 1;
+                    next[from] = cell;
+                    queue[tail++] = from;
+                }
+            }
+        }
+    }//end search
+
+    /**
+     * Checks whether the way of a jump from one cell to another is free: the
+     * column of the jump up to the body at its highest point, and the columns
+     * it crosses at the height it lands at.
+     */
+    private boolean canJump(int fromColumn, int fromRow, int toColumn, int toRow) {
+        if (!isStanding(fromColumn, fromRow)) {
+            return false;
+        }
+        for (int row = toRow - 1; row < fromRow; row++) {
+            if (!isFree(fromColumn, row)) {
+                return false;
+            }
+        }
+        int step = toColumn > fromColumn ? 1 : -1;
+        for (int column = fromColumn + step; fromColumn != toColumn && column != toColumn; column += step) {
+            if (!isFree(column, toRow) || !isFree(column, toRow - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }//end canJump
+
+    /**
+     * Finds the cell an object stands in, or will land in if it is falling.
+     * The row is taken half a tile above the feet, since gravity pushes the
+     * feet a little into the platform until the collisions are resolved.
+     *
+     * @return the cell, or -1 if it is outside the field or inside a platform
+     */
+    private int cellOf(GameObject object) {
+        int column = (int) Math.floor((object.getLeft() + object.getRight()) / 2 / World.TILE_SIZE) - firstColumn;
+        int row = (int) Math.floor((object.getDown() - World.TILE_SIZE / 2) / World.TILE_SIZE);
+        if (column < 0 || column >= columns) {
+            return -1;
+        }
+        for (row = Math.max(0, Math.min(rows - 1, row)); row < rows; row++) {
+            if (!isFree(column, row)) {
+                return -1;
+            }
+            if (isStanding(column, row)) {
+                return column * rows + row;
+            }
+        }
+        return -1;
+    }//end cellOf
+
+    /**
+     * Checks whether an enemy can stand in a cell.
+     */
+    private boolean isStanding(int column, int row) {
+        return column >= 0 && column < columns && row >= 0 && row < rows
+            && isFree(column, row) && isFree(column, row - 1)
+            && (row == rows - 1 || !isFree(column, row + 1));
+    }//end isStanding
+
+    /**
+     * Checks whether a cell of the field is free. The rows above the screen
+     * are free; the columns outside the field are not.
+     */
+    private boolean isFree(int column, int row) {
+        if (row < 0) {
+            return true;
+        }
+        return column >= 0 && column < columns && row < rows && !solid[column * rows + row];
+    }//end isFree
+
+    // Getters
+    public int getFirstColumn() {
+        return firstColumn;
+    }//end getFirstColumn
+
+    public int getColumns() {
+        return columns;
+    }//end getColumns
+
+    public long getSearches() {
+        return searches;
+    }//end getSearches
+
+    public long getTilesRead() {
+        return tilesRead;
+    }//end getTilesRead
+
+}//end class
@@ -0,0 +1,216 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * A utility class that measures how long each phase of a frame takes.
+ *
+ * Code around a phase calls start() and stop(phase, start); the duration is
+ * added to the histogram of the phase. Histograms are collected over windows
+ * of one second; the last complete window is the one shown in the overlay, so
+ * the numbers stay readable. The profiler also counts the garbage collections
+ * that happened since the previous frame.
+ *
+ * The profiler is off unless the stickman.profile system property is set or
+ * it is turned on with setEnabled. When it is off, start and stop only check
+ * a flag. Nothing is allocated while profiling. The phases are also timed
+ * while a flight recording is running, for the events of GameEvents.
+ *
+ * When the game runs on a SimulationThread, the phases of the simulation are
+ * recorded from that thread while the frame ends on the JavaFX thread. The
+ * histograms are not locked, so a duration recorded while the window changes
+ * may be counted in either window or lost; the overlay only shows statistics.
+ */
+public class FrameProfiler {
+
+    // Phases of the frame
+    public static final int FRAME = 0; // Time between two frames
+    public static final int CALLBACK = 1; // Time spent in the frame callback
+    public static final int SIMULATION = 2; // All the updates of the frame
+    public static final int RENDER = 3; // Drawing the frame
+    public static final int PHYSICS = 4; // Integrating the kinematics
+    public static final int STICKMAN = 5; // Movement of the stickman
+    public static final int ENEMIES = 6; // Movement of the enemies
+    public static final int COLLISIONS = 7; // Collisions with platforms
+    public static final int HAZARDS = 8; // Collisions with lava and enemies
+    public static final int PICKUPS = 9; // Collisions with stars
+    public static final int STREAMING = 10; // Camera and chunk streaming
+    public static final int STARS = 11; // Star refresh
+    public static final int TILES = 12; // Drawing the platforms and lava
+    public static final int SPRITES = 13; // Drawing the stickman, enemies and stars
+    public static final int HUD = 14; // Drawing the score and lives
+    public static final int PATHFINDING = 15; // Flow field of the enemies
+    public static final int SNAPSHOT = 16; // Copying the game for the renderer
+    public static final int DIRTY = 17; // Finding and clearing the parts of the screen to paint
+
+    // The name of each phase, as shown in the overlay
+    public static final String[] NAMES = {
+        "frame", "callback", "simulation", "render", "physics", "stickman", "enemies",
+        "collisions", "hazards", "pickups", "streaming", "stars", "tiles", "sprites", "hud",
+        "pathfinding", "snapshot", "dirty"
+    };
+
+    private static final long WINDOW = 1_000_000_000L; // Length of a collection window, in nanoseconds
+
+    private static volatile boolean enabled = Boolean.getBoolean("stickman.profile"); // True while measuring
+    private static volatile LatencyHistogram[] current = newHistograms(); // Histograms of the window being collected
+    private static LatencyHistogram[] shown = newHistograms(); // Histograms of the last complete window
+    private static long windowStart = System.nanoTime(); // Start of the window being collected
+    private static List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private static long gcCount = collectionCount(); // Collections seen so far
+    private static long gcTime = collectionTime(); // Total time of the collections seen so far, in milliseconds
+    private static long frameGcCount, frameGcTime; // Collections and their time since the previous frame
+    private static long windowGcCount, windowGcTime; // Collections and their time in the window being collected
+    private static long shownGcCount, shownGcTime; // Collections and their time in the last complete window
+
+    /**
+     * Gets the time a phase starts at.
+     *
+     * @return the current time in nanoseconds, or 0 if the profiler is off
+     *         and no flight recording is running
+     */
+    public static long start() {
+        return enabled || GameEvents.isRecording() ? System.nanoTime() : 0;
+    }//end start
+
+    /**
+     * Records the end of a phase.
+     *
+     * @param phase the phase, one of the constants of this class
+     * @param start the value returned by start() when the phase began
+     */
+    public static void stop(int phase, long start) {
+        if (enabled && start != 0) {
+            current[phase].record(System.nanoTime() - start);
+        }
+    }//end stop
+
+    /**
+     * Records the duration of a phase measured by the caller.
+     *
+     * @param phase    the phase, one of the constants of this class
+     * @param duration the duration, in nanoseconds
+     */
+    public static void record(int phase, long duration) {
+        if (enabled) {
+            current[phase].record(duration);
+        }
+    }//end record
+
+    /**
+     * Ends a frame: counts the garbage collections since the previous frame
+     * and starts a new window once the current one is complete.
+     *
+     * @param now the current time, in nanoseconds
+     */
+    public static void endFrame(long now) {
+        if (!enabled) {
+            return;
+        }
+        long count = collectionCount();
+        long time = collectionTime();
+        frameGcCount = count - gcCount;
+        frameGcTime = time - gcTime;
+        gcCount = count;
+        gcTime = time;
+        windowGcCount += frameGcCount;
+        windowGcTime += frameGcTime;
+
+        if (now - windowStart >= WINDOW) {
+            LatencyHistogram[] swap = shown;
+            shown = current;
+            current = swap;
+            for (LatencyHistogram histogram : current) {
+                histogram.reset();
+            }
+            shownGcCount = windowGcCount;
+            shownGcTime = windowGcTime;
+            windowGcCount = 0;
+            windowGcTime = 0;
+            windowStart = now;
+        }
+    }//end endFrame
+
+    /**
+     * Turns the profiler on or off. Turning it on starts a new window.
+     *
+     * @param on true to measure the phases
+     */
+    public static void setEnabled(boolean on) {
+        if (on && !enabled) {
+            for (int i = 0; i < current.length; i++) {
+                current[i].reset();
+                shown[i].reset();
+            }
+            windowStart = System.nanoTime();
+            gcCount = collectionCount();
+            gcTime = collectionTime();
+            frameGcCount = frameGcTime = 0;
+            windowGcCount = windowGcTime = 0;
+            shownGcCount = shownGcTime = 0;
+        }
+        enabled = on;
+    }//end setEnabled
+
+    /**
+     * Gets the number of garbage collections since the JVM started.
+     */
+    private static long collectionCount() {
+        long count = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            count += Math.max(0, collectors.get(i).getCollectionCount());
+        }
+        return count;
+    }//end collectionCount
+
+    /**
+     * Gets the time spent in garbage collections since the JVM started, in milliseconds.
+     */
+    private static long collectionTime() {
+        long time = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            time += Math.max(0, collectors.get(i).getCollectionTime());
+        }
+        return time;
+    }//end collectionTime
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }//end newHistograms
+
+    // Getters
+    public static boolean isEnabled() {
+        return enabled;
+    }//end isEnabled
+
+    /**
+     * Gets the histogram of a phase over the last complete window.
+     *
+     * @param phase the phase, one of the constants of this class
+     * @return the histogram of the phase
+     */
+    public static LatencyHistogram getHistogram(int phase) {
+        return shown[phase];
+    }//end getHistogram
+
+    public static long getFrameGcCount() {
+        return frameGcCount;
+    }//end getFrameGcCount
+
+    public static long getFrameGcTime() {
+        return frameGcTime;
+    }//end getFrameGcTime
+
+    public static long getWindowGcCount() {
+        return shownGcCount;
+    }//end getWindowGcCount
+
+    public static long getWindowGcTime() {
+        return shownGcTime;
+    }//end getWindowGcTime
+
+}//end class
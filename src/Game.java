@@ -1,14 +1,82 @@
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The Game class is responsible for managing the core mechanics of the game,
- * including updating the game state, handling collisions, and rendering all
- * game elements to the screen.
+ * including updating the game state and handling collisions.
+ *
+ * The game does not use any JavaFX type, so it can be simulated without the
+ * JavaFX toolkit (see HeadlessRunner). Drawing it is the job of the GameRenderer.
+ *
+ * Only the chunks of the level around the camera are kept in memory (see
+ * ChunkStreamer). Enemies and stars appear when their chunk is installed and
+ * go back to their pools when it is evicted, so their number depends on the
+ * size of the screen and not on the distance travelled. The stars collected
+ * in an evicted chunk are remembered, so they stay collected when the camera
+ * comes back; the enemies start again from where the level places them.
+ *
+ * The stickman and the enemies keep their kinematics in one EntityStore, the
+ * stars in another, so the physics of every moving object is integrated in a
+ * single pass before the behaviors run.
+ *
+ * A game plays a sequence of levels. Reaching the right edge of a level moves
+ * on to the next one, which a LevelLoader prepares in the background once the
+ * stickman is PREPARE_COLUMNS from the edge; the game is won at the end of the
+ * last level.
+ *
+ * Enemies and stars come from ObjectPools created with the game, so spawning
+ * and despawning them during a game (see spawnEnemy and spawnStar) does not
+ * allocate while the pools are big enough.
+ *
+ * The enemies find their way to the stickman through a FlowField computed
+ * once for all of them, and only again when the stickman changes tile.
+ *
+ * When there are many enemies, their movement and their collisions with the
+ * platforms run in parallel (see EnemyTask). Each enemy only reads the
+ * stickman and the static platforms and only writes to itself, so the result
+ * is the same as when they are updated one after the other.
  */
-public class Game{
+public final class Game implements ChunkStreamer.Listener{
+    // Number of buckets of each spatial hash
+    private static final int GRID_BUCKETS = 4096;
+
+    // Columns of a chunk, chunks kept on each side of the camera and chunks built ahead
+    public static final int CHUNK_COLUMNS = Integer.getInteger("stickman.chunkColumns", 16);
+    public static final int CHUNK_MARGIN = Integer.getInteger("stickman.chunkMargin", 1);
+    public static final int CHUNK_PREFETCH = Integer.getInteger("stickman.chunkPrefetch", 2);
+
+    // Columns from the right edge of a level at which the next level starts being prepared
+    public static final int PREPARE_COLUMNS = Integer.getInteger("stickman.prepareColumns", 1024);
+
+    // Chunks installed or prefetched when the camera is at the start of a level
+    private static final int START_CHUNKS = (int) Math.floor(World.WIDTH / (CHUNK_COLUMNS * World.TILE_SIZE))
+        + CHUNK_MARGIN + CHUNK_PREFETCH + 1;
+
+    // Number of enemies from which they are updated in parallel, and enemies per parallel task
+    public static final int PARALLEL_THRESHOLD = Integer.getInteger("stickman.parallelEnemies", 512);
+    public static final int PARALLEL_GRAIN = Integer.getInteger("stickman.parallelGrain", 64);
+
+    // Enemies and stars created with the game, most of each, and objects added when a pool is empty
+    public static final int ENEMY_POOL = Integer.getInteger("stickman.enemyPool", 64);
+    public static final int ENEMY_POOL_MAX = Integer.getInteger("stickman.enemyPoolMax", Integer.MAX_VALUE);
+    public static final int STAR_POOL = Integer.getInteger("stickman.starPool", 32);
+    public static final int STAR_POOL_MAX = Integer.getInteger("stickman.starPoolMax", Integer.MAX_VALUE);
+    public static final int POOL_GROWTH = Integer.getInteger("stickman.poolGrowth", 32);
+
+    private LevelLoader loader; // Opens the levels and prepares the next one
+    private LevelLoader.Prepared current; // The current level as it was prepared
+    private int levelIndex; // Position of the current level in the sequence
+    private LevelSource level; // Layout of the current level
+    private ChunkStreamer streamer; // Loads and evicts the chunks around the camera
+    private HashMap<Integer, BitSet> collectedStars; // Stars collected in each evicted chunk, by chunk index
+    private boolean restoring; // True while readState installs chunks whose objects come from the state
     private double levelWidth; // Width of the current level in pixels
     private double time; //time between considered collisions
     private double starTime; //Time elapsed since the last star refresh
@@ -16,17 +84,35 @@ public class Game{
     private int numLives; // Number of lives remaining for the player
     private int score; //Player's score, increased by collecting stars
     private boolean finished; //True if the game is over
+    private boolean won; //True if the game ended at the end of the last level
+    private long seed; // Seed the random generator started from
+    private GameRandom random; // Chooses the speed of the enemies and the refreshed stars
     
     
-    private Platform[] listPlatforms; //Array of platforms
-    private Lava[] listLava; //Array of lava object
+    private EntityStore bodies = new EntityStore(ENEMY_POOL + 1); // Kinematics of the stickman and the enemies
+    private EntityStore items = new EntityStore(STAR_POOL); // Positions of the stars
+    private ObjectPool<Enemy> enemyPool; // Enemies waiting to be spawned
+    private ObjectPool<Star> starPool; // Stars waiting to be spawned
     private Star[] listStar; //Array of Star object
     private Enemy[] listEnemies; //Array of Enemy objects 
     private Stickman stickman; //Stickman character controlled by the player
-    private int enemyCount; // Number of enemies in the level
-    private int starCount; // Number of stars in the level
+    private FlowField flowField; // Way to the stickman shared by the enemies
+    private int enemyCount; // Number of enemies in the game
+    private int parallelThreshold = PARALLEL_THRESHOLD; // Enemies from which they are updated in parallel
+    private int starCount; // Number of stars in the game
+
+    private SpatialHash<Platform> solidGrid; // Platforms, for platform collisions
+    private SpatialHash<GameObject> hazardGrid; // Lava and enemies, for losing lives
+    private SpatialHash<Star> pickupGrid; // Stars, for getting points
+    private ArrayList<Platform> solidCandidates = new ArrayList<>(); // Reused results of solidGrid queries
+    private ArrayList<GameObject> hazardCandidates = new ArrayList<>(); // Reused results of hazardGrid queries
+    private ArrayList<Star> pickupCandidates = new ArrayList<>(); // Reused results of pickupGrid queries
+    private ArrayList<ArrayList<Platform>> blockCandidates = new ArrayList<>(); // Reused results of each parallel task
+    private int candidatePairs; // Pairs returned by the grids during the last update
+    private int overlaps; // Pairs that actually overlapped during the last update
     
     private double xLvlOffset; // Horizontal offset for camera scrolling
+    private double prevXLvlOffset; // Camera offset at the start of the last update
     private double leftBorder; // Left boundary for the camera
     private double rightBorder; // Right boundary for the camera
     private double maxLvlOffsetX; // Maximum horizontal offset for the level
@@ -34,25 +120,137 @@ public class Game{
     /**
      * Default constructor for the Game class.
      * Initializes all game elements, including the level layout, platforms,
-     * enemies, stars, and lava.
+     * enemies, stars, and lava. The levels are those of Levels.SEQUENCE, or
+     * the binary level files listed by the stickman.level system property.
      */
     public Game(){
+        this(sequenceOf(System.getProperty("stickman.level", "")));
+    }//end empty argument constructor
+
+    /**
+     * Constructs a game playing a given level.
+     *
+     * @param level the layout of the level, in the format of Levels.LEVEL_1
+     */
+    public Game(String[] level){
+        this(new StringLevel(level));
+    }//end constructor
+
+    /**
+     * Constructs a game playing a given level. The random generator is seeded
+     * with the stickman.seed system property, or with the current time.
+     *
+     * @param level the source of the level layout
+     */
+    public Game(LevelSource level){
+        this(level, Long.getLong("stickman.seed", System.nanoTime()));
+    }//end constructor
+
+    /**
+     * Constructs a game playing a given level with a seeded random generator.
+     * Two games with the same level, seed and inputs play out the same way.
+     *
+     * @param level the source of the level layout
+     * @param seed  the seed of the random generator
+     */
+    public Game(LevelSource level, long seed){
+        this(new LevelLoader.Source[] {() -> level}, seed);
+    }//end constructor
+
+    /**
+     * Constructs a game playing a sequence of levels. The random generator is
+     * seeded with the stickman.seed system property, or with the current time.
+     *
+     * @param sequence the levels, in the order they are played
+     */
+    public Game(LevelLoader.Source[] sequence){
+        this(sequence, Long.getLong("stickman.seed", System.nanoTime()));
+    }//end constructor
+
+    /**
+     * Constructs a game playing a sequence of levels with a seeded random
+     * generator. The first level is loaded right away; the next one is
+     * prepared in the background.
+     *
+     * @param sequence the levels, in the order they are played
+     * @param seed     the seed of the random generator
+     */
+    public Game(LevelLoader.Source[] sequence, long seed){
         finished = false;
-        levelWidth = Levels.LEVEL_1[0].length() * Main.TILE_SIZE;
-        stickman = new Stickman(levelWidth);
+        this.seed = seed;
+        random = new GameRandom(seed);
+        loader = new LevelLoader(sequence, CHUNK_COLUMNS, START_CHUNKS);
+        LevelLoader.Prepared first = loader.take(0);
+        level = first.getLevel();
+        levelWidth = level.getColumns() * World.TILE_SIZE;
+        stickman = new Stickman(bodies, levelWidth);
+        flowField = new FlowField(level);
+        enemyPool = new ObjectPool<>("enemies", ENEMY_POOL, ENEMY_POOL_MAX, POOL_GROWTH,
+                () -> new Enemy(bodies, levelWidth, stickman, flowField));
+        starPool = new ObjectPool<>("stars", STAR_POOL, STAR_POOL_MAX, POOL_GROWTH, () -> new Star(items));
+        listEnemies = new Enemy[Math.max(10, ENEMY_POOL)];
+        listStar = new Star[Math.max(10, STAR_POOL)];
         leftBorder = 480;
-        rightBorder = Main.WIDTH - leftBorder;
-        maxLvlOffsetX = levelWidth - Main.WIDTH;
+        rightBorder = World.WIDTH - leftBorder;
         numLives = 5;
-        listPlatforms = new Platform[Levels.LEVEL_1[0].length() * 12];
-        listLava = new Lava[Levels.LEVEL_1[0].length() * 12];
-        listEnemies = new Enemy[10];
-        listStar = new Star[10];
         score = 0;
-        initializeLevel(); 
-    }//end empty argument constructor
+        startLevel(first);
+    }//end constructor
     
     
+    /**
+     * Gets the levels named by a list of binary level files. An entry of the
+     * list may also describe a level made up by a LevelGenerator, such as
+     * generated:1000000:50000:20000:7.
+     *
+     * @param files the paths of the level files separated by commas, or an
+     *              empty string for the levels of Levels.SEQUENCE
+     * @return the levels, in the order they are played
+     * @throws IllegalArgumentException if a generated level cannot be read
+     */
+    public static LevelLoader.Source[] sequenceOf(String files){
+        if(files.isEmpty()){
+            LevelLoader.Source[] sequence = new LevelLoader.Source[Levels.SEQUENCE.length];
+            for(int i = 0; i < sequence.length; i++){
+                String[] rows = Levels.SEQUENCE[i];
+                sequence[i] = () -> new StringLevel(rows);
+            }
+            return sequence;
+        }
+        String[] paths = files.split(",");
+        LevelLoader.Source[] sequence = new LevelLoader.Source[paths.length];
+        for(int i = 0; i < sequence.length; i++){
+            String name = paths[i].trim();
+            if(name.startsWith(LevelGenerator.PREFIX)){
+                LevelGenerator generated = LevelGenerator.parse(name);
+                sequence[i] = () -> generated;
+                continue;
+            }
+            Path path = Path.of(name);
+            sequence[i] = () -> BinaryLevel.open(path);
+        }
+        return sequence;
+    }//end sequenceOf
+
+    /**
+     * Starts playing a prepared level: puts the stickman and the camera back
+     * at the start and installs the chunks around the camera.
+     *
+     * @param prepared the level to play
+     */
+    private void startLevel(LevelLoader.Prepared prepared){
+        current = prepared;
+        levelIndex = prepared.getIndex();
+        level = prepared.getLevel();
+        levelWidth = level.getColumns() * World.TILE_SIZE;
+        maxLvlOffsetX = levelWidth - World.WIDTH;
+        stickman.respawn(levelWidth);
+        xLvlOffset = 0;
+        flowField.setLevel(level);
+        initializeLevel();
+        savePreviousState();
+    }//end startLevel
+    
     /**
      * Updates the game state. This method is called at regular intervals and
      * updates all game objects, handles collisions, and checks for game-over conditions.
@@ -60,37 +258,88 @@ public class Game{
      * @param deltaTime The time elapsed since the last update, used for smooth animations.
      */
     public void update(double deltaTime) {
+        savePreviousState(); //remembers the positions to interpolate from
+        candidatePairs = 0; //resets the collision counters
+        overlaps = 0;
         time += deltaTime; //timer for collisions
         starTime += deltaTime; //timer for stars refresh
-        stickman.update(deltaTime); //updates the position of the stickman
 
-        //updates all the enemies
-        for(int i = 0; i < listEnemies.length; i++){
-            if(listEnemies[i] != null){
-                listEnemies[i].update(deltaTime);                
+        //moves the stickman and all the enemies, after removing those that walked out of the installed chunks
+        long start = FrameProfiler.start();
+        for(int i = enemyCount - 1; i >= 0; i--){
+            if(isAwake(listEnemies[i])){
+                listEnemies[i].setAsleep(false);
+            }
+            else{
+                removeEnemy(i);
+            }
+        }
+        bodies.integrate(deltaTime);
+        endPhase(FrameProfiler.PHYSICS, start, deltaTime);
+
+        start = FrameProfiler.start();
+        stickman.update(deltaTime); //updates the movement of the stickman
+        endPhase(FrameProfiler.STICKMAN, start, deltaTime);
+
+        if(isParallel()){
+            //updates the enemies and checks their collisions with platforms in parallel,
+            //then checks the collisions of the stickman with platforms
+            start = FrameProfiler.start();
+            updateEnemiesInParallel(deltaTime, true, true);
+            endPhase(FrameProfiler.ENEMIES, start, deltaTime);
+            start = FrameProfiler.start();
+            checkStickmanCollisions();
+            endPhase(FrameProfiler.COLLISIONS, start, deltaTime);
+        }
+        else{
+            //updates all the enemies that are not sleeping
+            start = FrameProfiler.start();
+            for(int i = 0; i < enemyCount; i++){
+                if(!listEnemies[i].isAsleep()){
+                    listEnemies[i].update(deltaTime);                
+                }
             }
+            endPhase(FrameProfiler.ENEMIES, start, deltaTime);
+            //check for collisions with platforms for stickman and enemies
+            start = FrameProfiler.start();
+            checkCollisions();
+            endPhase(FrameProfiler.COLLISIONS, start, deltaTime);
         }
-        //check for collisions with platforms for stickman and enemies
-        checkCollisions();
+
+        //updates the way to the stickman, for the next update, if it moved to another tile
+        start = FrameProfiler.start();
+        flowField.update(stickman, streamer.getFirstColumn(), streamer.getEndColumn());
+        endPhase(FrameProfiler.PATHFINDING, start, deltaTime);
+
+        //moves the enemies to the cells they now occupy
+        start = FrameProfiler.start();
+        insertEnemies();
 
         //check for collisions with lava and enemies to lose a life
-        checkCollisionLostLife(listEnemies);
-        checkCollisionLostLife(listLava);
-        
+        checkCollisionLostLife(hazardGrid);
+        endPhase(FrameProfiler.HAZARDS, start, deltaTime);
 
         //check for collision with stars to get points
+        start = FrameProfiler.start();
         checkCollisionGetPoints();
+        endPhase(FrameProfiler.PICKUPS, start, deltaTime);
 
         //sets up the camera effect that follows the player
+        start = FrameProfiler.start();
         checkProximityBorder();
+
+        //loads the chunks the camera now sees and evicts the others
+        streamer.update(xLvlOffset);
+        endPhase(FrameProfiler.STREAMING, start, deltaTime);
        
         /// Refresh stars every 15 seconds
+        start = FrameProfiler.start();
         if (starTime >= 15){
             int starIndex;
 
             for (int i = 0; i < 3; i++) {
                 //Creates a random int from 0 to the number of stars 3 times
-                starIndex = (int) (Math.random() * (starCount - 1));
+                starIndex = (int) (random.nextDouble() * (starCount - 1));
                 
                 if(listStar[starIndex] != null && listStar[starIndex].isActive() == false){
                     listStar[starIndex].setActive(true);
@@ -99,6 +348,7 @@ public class Game{
             starTime = 0;            
 
         }
+        endPhase(FrameProfiler.STARS, start, deltaTime);
 
         // Reduce lives if a collision occurred
         if(collision && time > 2){
@@ -113,19 +363,78 @@ public class Game{
         if(numLives == 0){
             finished = true;
         }
+
+        //prepares the next level when the stickman nears the right edge, again if a load cancelled it
+        if(!finished && stickman.getRight() >= levelWidth - PREPARE_COLUMNS * World.TILE_SIZE){
+            loader.prepare(levelIndex + 1);
+        }
+
+        //moves on to the next level when the stickman reaches the right edge of this one
+        if(!finished && stickman.getRight() >= levelWidth - 1){
+            if(levelIndex + 1 < loader.size()){
+                startLevel(loader.take(levelIndex + 1));
+            }
+            else{
+                finished = true;
+                won = true;
+            }
+        }
     }//end update
     
+    /**
+     * Records the end of a phase of update in the FrameProfiler and, while a
+     * flight recording is running, as a GameEvents.UpdatePhase event.
+     *
+     * @param phase     the phase, one of the constants of FrameProfiler
+     * @param start     the value returned by FrameProfiler.start() when the phase began
+     * @param deltaTime the time simulated by the update
+     */
+    private void endPhase(int phase, long start, double deltaTime){
+        if(start == 0){
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        FrameProfiler.record(phase, elapsed);
+        if(GameEvents.isRecording()){
+            GameEvents.UpdatePhase event = new GameEvents.UpdatePhase();
+            if(event.shouldCommit()){
+                event.phase = FrameProfiler.NAMES[phase];
+                event.elapsed = elapsed;
+                event.deltaTime = (long) (deltaTime * 1e9);
+                event.enemies = enemyCount;
+                event.candidatePairs = candidatePairs;
+                event.overlaps = overlaps;
+                event.xLvlOffset = xLvlOffset;
+                event.commit();
+            }
+        }
+    }//end endPhase
+
+     /**
+     * Remembers the current positions of the moving objects and of the camera,
+     * so that draw can interpolate between two updates.
+     */
+    private void savePreviousState(){
+        bodies.savePreviousState();
+        prevXLvlOffset = xLvlOffset;
+    }//end savePreviousState
+
      /**
      * Checks for collisions between the stickman and stars. If a collision occurs,
      * the star is deactivated, and the score is increased.
      */
     public void checkCollisionGetPoints(){
-        for(int i = 0; i < listStar.length; i++){
-            if(listStar[i] != null && listStar[i].isActive() == true){   
+        pickupCandidates.clear();
+        pickupGrid.query(stickman, pickupCandidates);
+        for(int i = 0; i < pickupCandidates.size(); i++){
+            Star star = pickupCandidates.get(i);
+            if(star.isActive() == true){
+                candidatePairs++;
                 //checks for a collision                 
-                if((stickman.getDown() > listStar[i].getUp() ) && (stickman.getRight() > listStar[i].getLeft()) && (stickman.getLeft() < listStar[i].getRight()) && (stickman.getUp() < listStar[i].getDown())){
+                if(stickman.overlaps(star)){
+                    overlaps++;
                     //removes the star
-                    listStar[i].setActive(false);
+                    star.setActive(false);
                     
                     //adds 10 points
                     score += 10;                      
@@ -139,14 +448,18 @@ public class Game{
      * is detected, a life is lost.
      * 
      * implementation of polymorphism
+     *
+     * @param grid the grid holding the objects that take a life
      */
-    public void checkCollisionLostLife(GameObject[] list){
-        for(int i = 0; i < list.length; i++){
-            if(list[i] != null){                    
-                if((stickman.getDown() > list[i].getUp() ) && (stickman.getRight() > list[i].getLeft()) && (stickman.getLeft() < list[i].getRight()) && (stickman.getUp() < list[i].getDown())){
-                    collision = true;
-                    break;                      
-                }
+    public void checkCollisionLostLife(SpatialHash<GameObject> grid){
+        hazardCandidates.clear();
+        grid.query(stickman, hazardCandidates);
+        for(int i = 0; i < hazardCandidates.size(); i++){
+            candidatePairs++;
+            if(stickman.overlaps(hazardCandidates.get(i))){
+                overlaps++;
+                collision = true;
+                break;                      
             }
         }
     }//end checkCollisionLostLife
@@ -154,22 +467,132 @@ public class Game{
 
     /**
      * Checks for collisions between platforms and game characters
-     * (stickman and enemies).
+     * (stickman and enemies). Only the platforms in the cells around each
+     * character are tested.
      */
     public void checkCollisions(){
-        for(int i = 0; i < listPlatforms.length; i++){
-            if(listPlatforms[i] != null){
-                stickman.collision(listPlatforms[i]);                    
-            }
+        checkStickmanCollisions();
+        if(isParallel()){
+            updateEnemiesInParallel(0, false, true);
+            return;
         }
-        for(int i = 0; i < listEnemies.length; i++){
-            for(int j = 0; j < listPlatforms.length; j++){
-                if(listPlatforms[j] != null && listEnemies[i] != null){                   
-                    listEnemies[i].collision(listPlatforms[j]); 
-                }                
+        for(int i = 0; i < enemyCount; i++){
+            if(isAwake(listEnemies[i])){
+                solidCandidates.clear();
+                solidGrid.query(listEnemies[i], solidCandidates);
+                for(int j = 0; j < solidCandidates.size(); j++){
+                    Platform platform = solidCandidates.get(j);
+                    candidatePairs++;
+                    if(listEnemies[i].overlaps(platform)){
+                        overlaps++;
+                        listEnemies[i].collision(platform);
+                    }
+                }
             }
         }
     }//end checkCollisions
+
+    /**
+     * Checks for collisions between the stickman and the platforms around it.
+     */
+    private void checkStickmanCollisions(){
+        solidCandidates.clear();
+        solidGrid.query(stickman, solidCandidates);
+        for(int i = 0; i < solidCandidates.size(); i++){
+            Platform platform = solidCandidates.get(i);
+            candidatePairs++;
+            if(stickman.overlaps(platform)){
+                overlaps++;
+                stickman.collision(platform);
+            }
+        }
+    }//end checkStickmanCollisions
+
+    /**
+     * Checks whether the enemies are numerous enough to be updated in parallel.
+     *
+     * @return true if the enemies are updated in parallel
+     */
+    private boolean isParallel(){
+        return enemyCount >= parallelThreshold;
+    }//end isParallel
+
+    /**
+     * Updates the enemies that are not sleeping and/or checks their collisions
+     * with the platforms, using every core. The enemies are split into blocks
+     * of PARALLEL_GRAIN enemies and each block keeps its own list of
+     * candidates and its own counters, which are added up at the end.
+     *
+     * @param deltaTime the time elapsed since the last update
+     * @param move      true to update the movement of the enemies
+     * @param collide   true to check the collisions of the enemies with platforms
+     */
+    private void updateEnemiesInParallel(double deltaTime, boolean move, boolean collide){
+        int blocks = (enemyCount + PARALLEL_GRAIN - 1) / PARALLEL_GRAIN;
+        while(blockCandidates.size() < blocks){
+            blockCandidates.add(new ArrayList<>());
+        }
+        EnemyTask task = new EnemyTask(0, blocks, deltaTime, move, collide);
+        ForkJoinPool.commonPool().invoke(task);
+        candidatePairs += task.pairs;
+        overlaps += task.hits;
+    }//end updateEnemiesInParallel
+
+    /**
+     * Updates a range of blocks of enemies, splitting it in two until a
+     * single block is left.
+     */
+    private class EnemyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L; // RecursiveAction is Serializable; tasks never are
+
+        private final int firstBlock, endBlock; // Blocks of enemies handled by the task
+        private final double deltaTime; // The time elapsed since the last update
+        private final boolean move, collide; // What to do with each enemy
+        private int pairs, hits; // Candidate pairs and overlaps found by the task
+
+        EnemyTask(int firstBlock, int endBlock, double deltaTime, boolean move, boolean collide){
+            this.firstBlock = firstBlock;
+            this.endBlock = endBlock;
+            this.deltaTime = deltaTime;
+            this.move = move;
+            this.collide = collide;
+        }//end constructor
+
+        @Override
+        protected void compute(){
+            if(endBlock - firstBlock > 1){
+                int middle = (firstBlock + endBlock) >>> 1;
+                EnemyTask left = new EnemyTask(firstBlock, middle, deltaTime, move, collide);
+                EnemyTask right = new EnemyTask(middle, endBlock, deltaTime, move, collide);
+                invokeAll(left, right);
+                pairs = left.pairs + right.pairs;
+                hits = left.hits + right.hits;
+                return;
+            }
+            ArrayList<Platform> candidates = blockCandidates.get(firstBlock);
+            int end = Math.min(enemyCount, (firstBlock + 1) * PARALLEL_GRAIN);
+            for(int i = firstBlock * PARALLEL_GRAIN; i < end; i++){
+                Enemy enemy = listEnemies[i];
+                if(move && !enemy.isAsleep()){
+                    enemy.update(deltaTime);
+                }
+                if(collide && isAwake(enemy)){
+                    candidates.clear();
+                    solidGrid.query(enemy, candidates);
+                    for(int j = 0; j < candidates.size(); j++){
+                        Platform platform = candidates.get(j);
+                        pairs++;
+                        if(enemy.overlaps(platform)){
+                            hits++;
+                            enemy.collision(platform);
+                        }
+                    }
+                }
+            }
+        }//end compute
+
+    }//end class
     
      /**
      * Adjusts the camera offset to keep the stickman in view.
@@ -193,97 +616,492 @@ public class Game{
         }
     }//end checkProximityBorder
     
+    /**
+     * Initializes the level: returns every enemy and star to its pool and
+     * installs the chunks around the camera, creating their platforms and lava
+     * and spawning their enemies and stars. The rest of the level is loaded as
+     * the camera moves.
+     */
+    public void initializeLevel(){
+        GameEvents.InitializeLevel event = new GameEvents.InitializeLevel();
+        event.begin();
+        if(streamer != null){
+            streamer.clear();
+        }
+        while(enemyCount > 0){
+            despawnEnemy(listEnemies[enemyCount - 1]);
+        }
+        while(starCount > 0){
+            despawnStar(listStar[starCount - 1]);
+        }
+        solidGrid = new SpatialHash<>(World.TILE_SIZE, GRID_BUCKETS);
+        hazardGrid = new SpatialHash<>(World.TILE_SIZE, GRID_BUCKETS);
+        pickupGrid = new SpatialHash<>(World.TILE_SIZE, GRID_BUCKETS);
+        streamer = new ChunkStreamer(level, CHUNK_COLUMNS, CHUNK_MARGIN, CHUNK_PREFETCH, this);
+        for(LevelChunk chunk : current.getChunks()){
+            streamer.offer(chunk); //built by the LevelLoader
+        }
+        collectedStars = new HashMap<>();
+        streamer.update(xLvlOffset);
+        if(event.shouldCommit()){
+            event.level = levelIndex;
+            event.columns = level.getColumns();
+            event.chunks = streamer.getInstalled().size();
+            event.enemies = enemyCount;
+            event.stars = starCount;
+            event.commit();
+        }
+    }//end initializeLevel
 
-    
-   /**
-     * Draws all game elements to the screen, including platforms, stickman,
-     * enemies, stars, and the UI elements (score, lives, and game-over text).
+    /**
+     * Adds the tiles of a chunk to the collision grids and spawns its enemies
+     * and the stars that were not collected the last time it was installed.
      *
-     * @param context The JavaFX GraphicsContext for rendering.
+     * @param chunk the installed chunk
      */
-    public void draw(GraphicsContext context){
-        //draw the stickman
-        stickman.draw(context, xLvlOffset);
+    @Override
+    public void chunkInstalled(LevelChunk chunk){
+        for(Platform platform : chunk.getPlatforms()){
+            solidGrid.insertStatic(platform);
+        }
+        for(Lava lava : chunk.getLava()){
+            hazardGrid.insertStatic(lava);
+        }
+        if(restoring){
+            return;
+        }
 
-        //draw the platforms
-        for(int i = 0; i < listPlatforms.length; i++){
-            if(listPlatforms[i] != null){
-                listPlatforms[i].draw(context, xLvlOffset);  
-                              
+        double[] enemies = chunk.getEnemySpawns();
+        for(int i = 0; i < enemies.length; i += 2){
+            spawnEnemy(enemies[i], enemies[i + 1]);
+        }
+        BitSet collected = collectedStars.get(chunk.getIndex());
+        double[] stars = chunk.getStarSpawns();
+        for(int i = 0; i < stars.length; i += 2){
+            if(collected == null || !collected.get(i / 2)){
+                spawnStar(stars[i], stars[i + 1]);
             }
-            if(listLava[i] != null){
-                listLava[i].draw(context, xLvlOffset);
+        }
+    }//end chunkInstalled
+
+    /**
+     * Takes an enemy from the pool and places it in the level.
+     *
+     * @param x the x-coordinate of the enemy
+     * @param y the y-coordinate of the enemy
+     * @return the enemy, or null if the pool of enemies is exhausted
+     */
+    public Enemy spawnEnemy(double x, double y){
+        Enemy enemy = enemyPool.spawn();
+        if(enemy == null){
+            return null;
+        }
+        enemy.setLevelWidth(levelWidth);
+        enemy.spawn(x, y, random);
+        addEnemy(enemy);
+        return enemy;
+    }//end spawnEnemy
+
+    /**
+     * Adds a spawned enemy at the end of the list of enemies.
+     */
+    private void addEnemy(Enemy enemy){
+        if(enemyCount == listEnemies.length){
+            listEnemies = Arrays.copyOf(listEnemies, Math.max(enemyCount * 2, enemyPool.getSize()));
+        }
+        listEnemies[enemyCount++] = enemy;
+    }//end addEnemy
+
+    /**
+     * Removes an enemy from the level and returns it to the pool. The last
+     * enemy of the list takes its place.
+     *
+     * @param enemy the enemy to remove
+     */
+    public void despawnEnemy(Enemy enemy){
+        int index = enemyCount - 1;
+        while(index >= 0 && listEnemies[index] != enemy){
+            index--;
+        }
+        if(index < 0){
+            throw new IllegalArgumentException("The enemy is not in the game");
+        }
+        removeEnemy(index);
+    }//end despawnEnemy
+
+    /**
+     * Returns the enemy at a position of the list to the pool.
+     */
+    private void removeEnemy(int index){
+        Enemy enemy = listEnemies[index];
+        hazardGrid.removeDynamic(enemy); //not found when the enemy was not inserted during the last update
+        listEnemies[index] = listEnemies[--enemyCount];
+        listEnemies[enemyCount] = null;
+        enemyPool.despawn(enemy);
+    }//end removeEnemy
+
+    /**
+     * Takes a star from the pool and places it, active, in the level.
+     *
+     * @param x the x-coordinate of the star
+     * @param y the y-coordinate of the star
+     * @return the star, or null if the pool of stars is exhausted
+     */
+    public Star spawnStar(double x, double y){
+        Star star = starPool.spawn();
+        if(star == null){
+            return null;
+        }
+        star.spawn(x, y);
+        addStar(star);
+        return star;
+    }//end spawnStar
+
+    /**
+     * Adds a spawned and placed star at the end of the list of stars.
+     */
+    private void addStar(Star star){
+        if(starCount == listStar.length){
+            listStar = Arrays.copyOf(listStar, Math.max(starCount * 2, starPool.getSize()));
+        }
+        listStar[starCount++] = star;
+        pickupGrid.insertStatic(star);
+    }//end addStar
+
+    /**
+     * Removes a star from the level and returns it to the pool. The last
+     * star of the list takes its place.
+     *
+     * @param star the star to remove
+     */
+    public void despawnStar(Star star){
+        int index = starCount - 1;
+        while(index >= 0 && listStar[index] != star){
+            index--;
+        }
+        if(index < 0){
+            throw new IllegalArgumentException("The star is not in the game");
+        }
+        removeStar(index);
+    }//end despawnStar
+
+    /**
+     * Returns the star at a position of the list to the pool.
+     */
+    private void removeStar(int index){
+        Star star = listStar[index];
+        if(!pickupGrid.removeStatic(star)){
+            throw new IllegalStateException("The star is not in the pickup grid");
+        }
+        listStar[index] = listStar[--starCount];
+        listStar[starCount] = null;
+        starPool.despawn(star);
+    }//end removeStar
+
+    /**
+     * Removes the tiles of a chunk from the collision grids and returns the
+     * enemies and stars inside its columns to their pools, remembering which
+     * of its stars were collected.
+     *
+     * @param chunk the evicted chunk
+     */
+    @Override
+    public void chunkEvicted(LevelChunk chunk){
+        for(Platform platform : chunk.getPlatforms()){
+            if(!solidGrid.removeStatic(platform)){
+                throw new IllegalStateException("A platform of chunk " + chunk.getIndex() + " is not in the grid");
+            }
+        }
+        for(Lava lava : chunk.getLava()){
+            if(!hazardGrid.removeStatic(lava)){
+                throw new IllegalStateException("A lava tile of chunk " + chunk.getIndex() + " is not in the grid");
             }
         }
 
-        //draw the enemies
-        for(int i = 0; i < listEnemies.length; i++){
-            if(listEnemies[i] != null){
-                listEnemies[i].draw(context, xLvlOffset);                
+        //the lists are walked backwards, so the object moved into a freed place was already seen
+        double left = chunk.getLeft();
+        double right = chunk.getRight();
+        for(int i = enemyCount - 1; i >= 0; i--){
+            if(listEnemies[i].getLeft() >= left && listEnemies[i].getLeft() < right){
+                removeEnemy(i);
             }
         }
+        BitSet collected = collectedStars.computeIfAbsent(chunk.getIndex(), index -> new BitSet());
+        for(int i = starCount - 1; i >= 0; i--){
+            Star star = listStar[i];
+            if(star.getLeft() >= left && star.getLeft() < right){
+                collected.set(indexOfStar(chunk, star), !star.isActive());
+                removeStar(i);
+            }
+        }
+        if(collected.isEmpty()){
+            collectedStars.remove(chunk.getIndex());
+        }
+    }//end chunkEvicted
 
-        //draw the stars
-        for(int i = 0; i < listStar.length; i++){
-            if(listStar[i] != null && listStar[i].isActive() == true){
-                listStar[i].draw(context, xLvlOffset);                
+    /**
+     * Finds which star of a chunk a star is, by its position.
+     *
+     * @param chunk the chunk the star belongs to
+     * @param star  a star spawned by the chunk
+     * @return the position of the star among the stars of the chunk
+     */
+    private static int indexOfStar(LevelChunk chunk, Star star){
+        double[] stars = chunk.getStarSpawns();
+        for(int i = 0; i < stars.length; i += 2){
+            if(stars[i] == star.getLeft() && stars[i + 1] == star.getUp()){
+                return i / 2;
             }
         }
+        throw new IllegalStateException("The star is not one of chunk " + chunk.getIndex());
+    }//end indexOfStar
 
-        //draw the end text
-        if (finished) {
-            String textEnd = "GAME OVER";
-            context.setFill(Color.RED);
-            context.setFont(new Font(60));
-            context.fillText(textEnd, Main.WIDTH * 0.4, Main.HEIGHT / 2);
+    /**
+     * Puts the enemies of the installed chunks in the cells of the hazard grid
+     * they occupy.
+     */
+    private void insertEnemies(){
+        hazardGrid.clearDynamic();
+        for(int i = 0; i < enemyCount; i++){
+            if(isAwake(listEnemies[i])){
+                hazardGrid.insertDynamic(listEnemies[i]);
+            }
         }
+    }//end insertEnemies
 
-        //draws the score
-        context.setFill(Color.BLACK);
-        context.setFont(new Font(30));
-        context.fillText("Score: " + String.valueOf(score), Main.WIDTH * 0.1, Main.HEIGHT * 0.1);
+    /**
+     * Checks whether an enemy stands in an installed chunk. Enemies elsewhere
+     * have no platforms to stand on, so they are not simulated.
+     *
+     * @param enemy the enemy to check
+     * @return true if the enemy is simulated
+     */
+    private boolean isAwake(Enemy enemy){
+        return streamer.isInstalled(enemy.getLeft());
+    }//end isAwake
 
-        //draws the lives
-        var heart = new Image("heart.png");
-        for (int i = 0; i < numLives; i++) {
-            context.drawImage(heart, Main.WIDTH * 0.8 + 50 * i, Main.HEIGHT * 0.1 - 40, 40, 40);
+    /**
+     * Writes the state of the game in between two updates (see SaveGame): the
+     * level, the score, the lives, the timers, the random generator, the
+     * camera, the window of the flow field, the stars collected in evicted
+     * chunks, then the stickman, the enemies and the stars. Nothing that can
+     * be read again from the level is written.
+     *
+     * @param out the buffer receiving the state
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    void writeState(ByteBuffer out){
+        out.putInt(levelIndex);
+        out.putInt(score);
+        out.putInt(numLives);
+        out.put((byte) ((finished ? 1 : 0) | (won ? 2 : 0) | (collision ? 4 : 0)));
+        out.putDouble(time);
+        out.putDouble(starTime);
+        out.putLong(random.getState());
+        out.putDouble(xLvlOffset);
+        out.putDouble(prevXLvlOffset);
+        out.putInt(flowField.getFirstColumn());
+        out.putInt(flowField.getColumns());
+        out.putInt(collectedStars.size());
+        for(var entry : collectedStars.entrySet()){
+            long[] words = entry.getValue().toLongArray();
+            out.putInt(entry.getKey());
+            out.putInt(words.length);
+            for(long word : words){
+                out.putLong(word);
+            }
+        }
+        stickman.writeState(out);
+        out.putInt(enemyCount);
+        for(int i = 0; i < enemyCount; i++){
+            listEnemies[i].writeState(out);
+        }
+        out.putInt(starCount);
+        for(int i = 0; i < starCount; i++){
+            listStar[i].writeState(out);
         }
+    }//end writeState
 
-        
-    }//end draw
-    
     /**
-     * Initializes the level by parsing the level layout and creating platforms,
-     * enemies, lava, and stars based on the layout data.
+     * Puts the game back in a state written by writeState. The game must play
+     * the same sequence of levels as the game that was written. The chunks
+     * around the camera are installed again, and the enemies and stars are
+     * taken from the pools in the order they were written, so the game goes on
+     * exactly as the written one would have.
+     *
+     * The whole state is checked before the game is changed, so a state that
+     * does not fit the game leaves it as it was, and the level it was checked
+     * against goes back to the LevelLoader.
+     *
+     * @param in the buffer holding the state
+     * @throws IllegalArgumentException if the state does not fit the levels or the pools of the game
+     * @throws java.nio.BufferUnderflowException if the state is cut short
      */
-    public void initializeLevel(){
-        int count = 0;
-        enemyCount = 0;
-        starCount = 0;
-        for(int i = 0; i < Levels.LEVEL_1.length; i++){
-            String line = Levels.LEVEL_1[i];
-            for(int j = 0; j < line.length(); j++){
-                
-                if(line.charAt(j) == '1'){
-                    listPlatforms[count] = new Platform(j * Main.TILE_SIZE, i * Main.TILE_SIZE, Main.TILE_SIZE, Main.TILE_SIZE);
-                }
-                if(line.charAt(j) == '2'){
-                    listEnemies[enemyCount] = new Enemy(levelWidth, j * Main.TILE_SIZE, i * Main.TILE_SIZE, stickman);
-                    enemyCount++;
-                }
-                if(line.charAt(j) == '3'){
-                    listLava[count] = new Lava(j * Main.TILE_SIZE, i * Main.TILE_SIZE, Main.TILE_SIZE, Main.TILE_SIZE);
-                }
-                if(line.charAt(j) == '4'){
-                    listStar[starCount] = new Star(j * Main.TILE_SIZE + 15, i * Main.TILE_SIZE);
-                    starCount++;
-                }
-                count += 1;
-                
+    void readState(ByteBuffer in){
+        int index = in.getInt(in.position());
+        if(index < 0 || index >= loader.size()){
+            throw new IllegalArgumentException("The game has no level " + index);
+        }
+        LevelLoader.Prepared prepared = index != levelIndex ? loader.take(index) : null;
+        try{
+            checkState(in.duplicate(), prepared != null ? prepared.getLevel() : level);
+        }
+        catch(RuntimeException e){
+            if(prepared != null){
+                loader.giveBack(prepared); //keeps the next level prepared for the game going on
             }
+            throw e;
         }
-              
-    }//end initializeLevel
+
+        in.getInt(); //the level, read above
+        if(prepared != null){
+            startLevel(prepared);
+        }
+        score = in.getInt();
+        numLives = in.getInt();
+        byte flags = in.get();
+        finished = (flags & 1) != 0;
+        won = (flags & 2) != 0;
+        collision = (flags & 4) != 0;
+        time = in.getDouble();
+        starTime = in.getDouble();
+        random.setState(in.getLong());
+        xLvlOffset = in.getDouble();
+        prevXLvlOffset = in.getDouble();
+        int fieldColumn = in.getInt();
+        int fieldColumns = in.getInt();
+        HashMap<Integer, BitSet> collected = new HashMap<>();
+        int chunks = in.getInt();
+        for(int i = 0; i < chunks; i++){
+            int chunk = in.getInt();
+            long[] words = new long[in.getInt()];
+            for(int j = 0; j < words.length; j++){
+                words[j] = in.getLong();
+            }
+            collected.put(chunk, BitSet.valueOf(words));
+        }
+
+        //installs the chunks around the saved camera, without spawning their objects again
+        streamer.clear();
+        while(enemyCount > 0){
+            despawnEnemy(listEnemies[enemyCount - 1]);
+        }
+        while(starCount > 0){
+            despawnStar(listStar[starCount - 1]);
+        }
+        collectedStars = collected;
+        restoring = true;
+        try{
+            streamer.update(xLvlOffset);
+        }
+        finally{
+            restoring = false;
+        }
+
+        stickman.readState(in);
+        int enemies = in.getInt();
+        for(int i = 0; i < enemies; i++){
+            Enemy enemy = enemyPool.spawn();
+            if(enemy == null){
+                throw new IllegalStateException("The pool of enemies cannot hold " + enemies + " enemies");
+            }
+            enemy.setLevelWidth(levelWidth);
+            enemy.readState(in);
+            addEnemy(enemy);
+        }
+        int stars = in.getInt();
+        for(int i = 0; i < stars; i++){
+            Star star = starPool.spawn();
+            if(star == null){
+                throw new IllegalStateException("The pool of stars cannot hold " + stars + " stars");
+            }
+            star.readState(in);
+            addStar(star);
+        }
+        insertEnemies();
+
+        //the enemies steer with the field as it was searched during the last update
+        flowField.setLevel(level);
+        if(fieldColumns > 0){
+            flowField.update(stickman, fieldColumn, fieldColumn + fieldColumns);
+        }
+    }//end readState
+
+    /**
+     * Reads a state written by writeState without changing the game, and
+     * checks that the game can be put in it.
+     *
+     * @param in    a view of the buffer holding the state
+     * @param level the level the state is played in
+     * @throws IllegalArgumentException if the state does not fit the level or the pools
+     * @throws java.nio.BufferUnderflowException if the state is cut short
+     */
+    private void checkState(ByteBuffer in, LevelSource level){
+        skip(in, 4 + 4 + 4 + 1 + 8 + 8 + 8); //level, score, lives, flags, timers and random state
+        double offset = in.getDouble();
+        in.getDouble(); //previous offset
+        if(!(offset >= 0 && offset <= level.getColumns() * World.TILE_SIZE)){
+            throw new IllegalArgumentException("The camera is outside the level");
+        }
+        int fieldColumn = in.getInt();
+        int fieldColumns = in.getInt();
+        if(fieldColumn < 0 || fieldColumns < 0 || fieldColumns > level.getColumns() - fieldColumn){
+            throw new IllegalArgumentException("The flow field is outside the level");
+        }
+        int chunks = in.getInt();
+        int chunkCount = (level.getColumns() + CHUNK_COLUMNS - 1) / CHUNK_COLUMNS;
+        if(chunks < 0 || chunks > chunkCount){
+            throw new IllegalArgumentException("The level has no " + chunks + " chunks");
+        }
+        for(int i = 0; i < chunks; i++){
+            int chunk = in.getInt();
+            int words = in.getInt();
+            if(chunk < 0 || chunk >= chunkCount || words < 0 || words > in.remaining() / 8){
+                throw new IllegalArgumentException("The level has no chunk " + chunk + " with " + words + " words");
+            }
+            skip(in, words * 8);
+        }
+        checkObject(in, Stickman.STATE_BYTES);
+        checkObjects(in, Enemy.STATE_BYTES, enemyPool);
+        checkObjects(in, Star.STATE_BYTES, starPool);
+    }//end checkState
+
+    /**
+     * Checks a count of objects and the objects that follow it.
+     */
+    private static void checkObjects(ByteBuffer in, int bytes, ObjectPool<?> pool){
+        int count = in.getInt();
+        if(count < 0 || count > pool.getMaxSize()){
+            throw new IllegalArgumentException("The pool of " + pool.getName() + " cannot hold " + count);
+        }
+        for(int i = 0; i < count; i++){
+            checkObject(in, bytes);
+        }
+    }//end checkObjects
+
+    /**
+     * Checks the sprite of an object written by GameObject.writeState and skips the object.
+     */
+    private static void checkObject(ByteBuffer in, int bytes){
+        if(in.remaining() < bytes){
+            throw new BufferUnderflowException();
+        }
+        int sprite = in.getShort(in.position() + GameObject.STATE_BYTES - 2);
+        if(sprite < SpriteId.NONE || sprite >= SpriteId.FILES.length){
+            throw new IllegalArgumentException("No sprite " + sprite);
+        }
+        skip(in, bytes);
+    }//end checkObject
+
+    /**
+     * Moves past a number of bytes of a buffer.
+     */
+    private static void skip(ByteBuffer in, int bytes){
+        if(in.remaining() < bytes){
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + bytes);
+    }//end skip
 
 
     // Getters and Setters
@@ -298,5 +1116,162 @@ public class Game{
     public boolean isFinished() {
         return finished;
     }//end isFinished
+
+    public boolean isWon() {
+        return won;
+    }//end isWon
+
+    public int getLevelIndex() {
+        return levelIndex;
+    }//end getLevelIndex
+
+    public int getLevelCount() {
+        return loader.size();
+    }//end getLevelCount
+
+    public long getLevelFingerprint() {
+        return loader.fingerprint();
+    }//end getLevelFingerprint
+
+    public long getLevelWaits() {
+        return loader.getWaits();
+    }//end getLevelWaits
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }//end getParallelThreshold
+
+    /**
+     * Sets the number of enemies from which they are updated in parallel,
+     * PARALLEL_THRESHOLD by default. The game plays out the same either way.
+     *
+     * @param parallelThreshold the number of enemies, Integer.MAX_VALUE to never update them in parallel
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }//end setParallelThreshold
+
+    public long getSeed() {
+        return seed;
+    }//end getSeed
+
+    public GameRandom getRandom() {
+        return random;
+    }//end getRandom
+
+    public Stickman getStickman() {
+        return stickman;
+    }//end getStickman
+
+    public FlowField getFlowField() {
+        return flowField;
+    }//end getFlowField
+
+    /**
+     * Gets the chunks of the level currently in memory, from left to right.
+     *
+     * @return the installed chunks
+     */
+    public ArrayList<LevelChunk> getChunks() {
+        return streamer.getInstalled();
+    }//end getChunks
+
+    /**
+     * Collects the enemies that may be visible in a horizontal range of the level.
+     *
+     * @param left  the left side of the range
+     * @param right the right side of the range
+     * @param out   the list receiving the enemies
+     */
+    public void collectEnemies(double left, double right, ArrayList<GameObject> out) {
+        int start = out.size();
+        hazardGrid.query(left, 0, right, World.HEIGHT, out);
+        int kept = start;
+        for(int i = start; i < out.size(); i++){
+            if(out.get(i) instanceof Enemy){
+                out.set(kept++, out.get(i));
+            }
+        }
+        while(out.size() > kept){
+            out.remove(out.size() - 1);
+        }
+    }//end collectEnemies
+
+    /**
+     * Collects the stars that may be visible in a horizontal range of the level.
+     *
+     * @param left  the left side of the range
+     * @param right the right side of the range
+     * @param out   the list receiving the stars
+     */
+    public void collectStars(double left, double right, ArrayList<Star> out) {
+        pickupGrid.query(left, 0, right, World.HEIGHT, out);
+    }//end collectStars
+
+    public ChunkStreamer getStreamer() {
+        return streamer;
+    }//end getStreamer
+
+    public EntityStore getBodies() {
+        return bodies;
+    }//end getBodies
+
+    public ObjectPool<Enemy> getEnemyPool() {
+        return enemyPool;
+    }//end getEnemyPool
+
+    public ObjectPool<Star> getStarPool() {
+        return starPool;
+    }//end getStarPool
+
+    public Enemy[] getEnemies() {
+        return listEnemies;
+    }//end getEnemies
+
+    public Star[] getStars() {
+        return listStar;
+    }//end getStars
+
+    public int getScore() {
+        return score;
+    }//end getScore
+
+    public int getNumLives() {
+        return numLives;
+    }//end getNumLives
+
+    public double getXLvlOffset() {
+        return xLvlOffset;
+    }//end getXLvlOffset
+
+    /**
+     * Gets the camera offset interpolated between the previous and the current update.
+     *
+     * @param alpha how far the frame is between the two updates (0 to 1)
+     * @return the interpolated camera offset
+     */
+    public double getRenderXLvlOffset(double alpha) {
+        return prevXLvlOffset + (xLvlOffset - prevXLvlOffset) * alpha;
+    }//end getRenderXLvlOffset
+
+    public int getEnemyCount() {
+        return enemyCount;
+    }//end getEnemyCount
+
+    public int getStarCount() {
+        return starCount;
+    }//end getStarCount
+
+    public SpatialHash<GameObject> getHazardGrid() {
+        return hazardGrid;
+    }//end getHazardGrid
+
+    public int getCandidatePairs() {
+        return candidatePairs;
+    }//end getCandidatePairs
+
+    public int getOverlaps() {
+        return overlaps;
+    }//end getOverlaps
     
 }//end class
\ No newline at end of file
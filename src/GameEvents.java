@@ -0,0 +1,174 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of the game.
+ *
+ * The events are recorded along with the GC, JIT and allocation events of the
+ * JVM when the game runs with -XX:StartFlightRecording, so frame spikes can be
+ * matched with their cause in JDK Mission Control. They appear under the
+ * "Stickman" category. When no recording is running, creating and committing
+ * an event does nothing.
+ */
+public class GameEvents {
+
+    private static volatile boolean recording; // True while a flight recording is running
+
+    // Follows the recordings started and stopped from the command line, jcmd or JMC
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update(recorder);
+            }//end recorderInitialized
+
+            @Override
+            public void recordingStateChanged(jdk.jfr.Recording changed) {
+                update(FlightRecorder.getFlightRecorder());
+            }//end recordingStateChanged
+
+            private void update(FlightRecorder recorder) {
+                boolean running = false;
+                for (jdk.jfr.Recording each : recorder.getRecordings()) {
+                    running |= each.getState() == RecordingState.RUNNING;
+                }
+                recording = running;
+            }//end update
+        });
+    }
+
+    /**
+     * Checks whether a flight recording is running.
+     *
+     * @return true if events are being recorded
+     */
+    public static boolean isRecording() {
+        return recording;
+    }//end isRecording
+
+    /**
+     * One call of the frame callback of the AnimationTimer.
+     */
+    @Name("stickman.Frame")
+    @Label("Frame")
+    @Category("Stickman")
+    @Description("One frame: the updates it ran and the drawing of the game")
+    @StackTrace(false)
+    public static class Frame extends Event {
+        @Label("Delta Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long deltaTime;
+
+        @Label("Updates")
+        public int steps;
+
+        @Label("Enemies")
+        public int enemies;
+
+        @Label("Stars")
+        public int stars;
+
+        @Label("Drawn Objects")
+        public int drawn;
+
+        @Label("Camera Offset")
+        public double xLvlOffset;
+    }//end class
+
+    /**
+     * One phase of Game.update (see FrameProfiler for the phases).
+     */
+    @Name("stickman.UpdatePhase")
+    @Label("Update Phase")
+    @Category("Stickman")
+    @Description("One phase of a simulation step")
+    @StackTrace(false)
+    public static class UpdatePhase extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        public long elapsed;
+
+        @Label("Step")
+        @Timespan(Timespan.NANOSECONDS)
+        public long deltaTime;
+
+        @Label("Enemies")
+        public int enemies;
+
+        @Label("Candidate Pairs")
+        public int candidatePairs;
+
+        @Label("Overlaps")
+        public int overlaps;
+
+        @Label("Camera Offset")
+        public double xLvlOffset;
+    }//end class
+
+    /**
+     * One call of Game.initializeLevel.
+     */
+    @Name("stickman.InitializeLevel")
+    @Label("Initialize Level")
+    @Category("Stickman")
+    public static class InitializeLevel extends Event {
+        @Label("Level")
+        public int level;
+
+        @Label("Columns")
+        public int columns;
+
+        @Label("Installed Chunks")
+        public int chunks;
+
+        @Label("Enemies")
+        public int enemies;
+
+        @Label("Stars")
+        public int stars;
+    }//end class
+
+    /**
+     * A change of the scene shown by the window.
+     */
+    @Name("stickman.SceneTransition")
+    @Label("Scene Transition")
+    @Category("Stickman")
+    @StackTrace(false)
+    public static class SceneTransition extends Event {
+        @Label("From")
+        public String from;
+
+        @Label("To")
+        public String to;
+    }//end class
+
+    /**
+     * The loading of an image, a font or the sprite atlas by the AssetCache.
+     */
+    @Name("stickman.AssetLoad")
+    @Label("Asset Load")
+    @Category("Stickman")
+    public static class AssetLoad extends Event {
+        @Label("Asset")
+        public String name;
+
+        @Label("Kind")
+        public String kind;
+
+        @Label("Decoded Bytes")
+        public long bytes;
+    }//end class
+
+}//end class
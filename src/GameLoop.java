@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Drives the game simulation with a fixed timestep.
+ *
+ * The time elapsed between two frames is added to an accumulator which is then
+ * consumed in steps of exactly 1 / tickRate seconds. The number of steps run
+ * in one frame is capped: time that cannot be caught up is dropped, so a long
+ * pause makes the game slow down for a moment instead of trying to catch up
+ * forever (the "spiral of death"). The fraction of a step left in the
+ * accumulator is used to interpolate the positions that are drawn. The key
+ * events posted to Input are applied before each step.
+ *
+ * When given a SaveGame, the loop saves the game whenever it moves on to
+ * another level (a checkpoint), and saves or loads it between two frames of
+ * steps when asked to, so the game is never saved in the middle of a step.
+ */
+public class GameLoop {
+
+    private final double step; // Length of one simulation step in seconds
+    private final int maxSteps; // Maximum number of steps run in one frame
+    private double accumulator; // Time waiting to be simulated, in seconds
+    private double alpha; // Fraction of a step left in the accumulator (0 to 1)
+    private long ticks; // Total number of steps run
+    private long droppedSteps; // Total number of steps dropped because of the cap
+    private Recording recording; // Records the keys of every step, null when not recording
+    private SaveGame saveGame; // Saves and loads the game, null when saving is off
+    private Path savePath; // File the game is saved to
+    private volatile boolean saveRequested, loadRequested; // Set by requestSave and requestLoad
+    private int checkpoint = -1; // Level of the game after the last step, -1 before the first step
+
+    /**
+     * Constructs a loop running the simulation at a given rate.
+     *
+     * @param tickRate the number of simulation steps per second
+     * @param maxSteps the maximum number of steps run in one frame
+     */
+    public GameLoop(double tickRate, int maxSteps) {
+        this.step = 1.0 / tickRate;
+        this.maxSteps = maxSteps;
+    }//end constructor
+
+    /**
+     * Advances the simulation by the time elapsed since the last frame.
+     *
+     * @param game      the game to update
+     * @param frameTime the time elapsed since the last frame, in seconds
+     * @return the number of simulation steps that were run
+     */
+    public int advance(Game game, double frameTime) {
+        if (saveGame != null) {
+            if (saveRequested) {
+                saveRequested = false;
+                save(game);
+            }
+            if (loadRequested) {
+                loadRequested = false;
+                load(game);
+            }
+        }
+        accumulator += frameTime;
+        int steps = 0;
+        while (accumulator >= step && steps < maxSteps) {
+            Input.drain(System.nanoTime()); // Applies the key events posted since the last step
+            if (recording != null) {
+                recording.record(Input.getPressed());
+            }
+            game.update(step);
+            accumulator -= step;
+            steps++;
+            if (saveGame != null && game.getLevelIndex() != checkpoint) {
+                if (checkpoint >= 0 && !game.isFinished()) {
+                    save(game); // Reached a new level
+                }
+                checkpoint = game.getLevelIndex();
+            }
+        }
+
+        // Drop the time that could not be simulated within the cap
+        if (accumulator >= step) {
+            long dropped = (long) (accumulator / step);
+            droppedSteps += dropped;
+            accumulator -= dropped * step;
+        }
+
+        ticks += steps;
+        alpha = accumulator / step;
+        return steps;
+    }//end advance
+
+    /**
+     * Starts recording the keys held during every step.
+     *
+     * @param recording the recording to add the steps to, or null to stop recording
+     */
+    public void setRecording(Recording recording) {
+        this.recording = recording;
+    }//end setRecording
+
+    /**
+     * Lets the loop save and load the game.
+     *
+     * @param saveGame the SaveGame writing and reading the file, or null to stop saving
+     * @param path     the file the game is saved to
+     */
+    public void setSaveGame(SaveGame saveGame, Path path) {
+        this.saveGame = saveGame;
+        this.savePath = path;
+    }//end setSaveGame
+
+    /**
+     * Asks for the game to be saved before the next frame of steps. May be
+     * called from any thread.
+     */
+    public void requestSave() {
+        saveRequested = true;
+    }//end requestSave
+
+    /**
+     * Asks for the game to be loaded from the last save before the next frame
+     * of steps. May be called from any thread.
+     */
+    public void requestLoad() {
+        loadRequested = true;
+    }//end requestLoad
+
+    /**
+     * Saves the game now. Must be called by the thread advancing the loop, or
+     * once it has stopped.
+     *
+     * @param game the game to save
+     */
+    public void save(Game game) {
+        try {
+            saveGame.save(game, savePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }//end save
+
+    /**
+     * Loads the last save into the game. The recording, if any, is stopped,
+     * since the game could no longer be replayed from its start. A save that
+     * cannot be loaded is reported and the game goes on as it was.
+     */
+    private void load(Game game) {
+        try {
+            saveGame.load(game, savePath);
+            recording = null;
+            checkpoint = game.getLevelIndex();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }//end load
+
+    // Getters
+    public Recording getRecording() {
+        return recording;
+    }//end getRecording
+
+    public double getStep() {
+        return step;
+    }//end getStep
+
+    public double getAlpha() {
+        return alpha;
+    }//end getAlpha
+
+    public long getTicks() {
+        return ticks;
+    }//end getTicks
+
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }//end getDroppedSteps
+
+    public SaveGame getSaveGame() {
+        return saveGame;
+    }//end getSaveGame
+
+}//end class
@@ -1,62 +1,171 @@
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
+import java.nio.ByteBuffer;
 
 /**
  * An abstract class that defines the physics and behavior of game objects.
  * 
  * Game objects in the game world have properties such as position, velocity, 
- * acceleration, size, and an associated image. This class provides methods 
- * for updating the physics of the object and retrieving its bounding box dimensions.
+ * acceleration, size, and an associated sprite. This class provides methods 
+ * for retrieving its bounding box dimensions. The position, velocity,
+ * acceleration and size are kept in an EntityStore, which integrates the
+ * physics of all its objects at once.
+ * 
+ * Game objects do not depend on JavaFX: the sprite is only an identifier
+ * (see SpriteId) and drawing is done by the GameRenderer.
  */
 public abstract class GameObject {
-    protected double x, y; // The x and y positions of the object
-    protected double vx, vy; // The velocities along the x and y axes
-    protected double ax, ay; // The accelerations along the x and y axes
-    protected double w, h; // The width and height of the object
-    protected Image image; // The image representing the object
+    protected final EntityStore store; // Holds the position, velocity, acceleration and size of the object
+    protected int slot; // Position of the object in the arrays of the store
+    protected int sprite = SpriteId.NONE; // The sprite representing the object
+    long cellKey; // Cell of the SpatialHash the object was last inserted into
+    static final int STATE_BYTES = 10 * 8 + 2; // Bytes written by writeState
 
     /**
-     * Draws the game object on the screen.
+     * Constructs a game object and gives it a slot in an entity store. The
+     * position, velocity, acceleration and size of the object start at zero.
+     * The store sees the object before its subclass is initialized, so only
+     * the classes of the game may extend it.
      * 
-     * @param context   the GraphicsContext used to draw the object
-     * @param lvlOffset the horizontal offset of the level, used for scrolling
+     * @param store the store holding the object
+     */
+    GameObject(EntityStore store) {
+        this.store = store;
+        this.slot = store.add(this);
+    }//end constructor
+
+    /**
+     * Gives the object a new slot in its store after it was detached. The
+     * position, velocity, acceleration and size start at zero. Used by the
+     * ObjectPool to spawn the object again.
      */
-    public abstract void draw(GraphicsContext context, double lvlOffset);
+    void attach() {
+        if (slot >= 0) {
+            throw new IllegalStateException("The object is already in its store");
+        }
+        slot = store.add(this);
+    }//end attach
 
     /**
-     * Updates the physics of the game object.
+     * Takes the object out of its store. The object keeps no slot until it
+     * is attached again.
+     */
+    void detach() {
+        store.remove(this);
+    }//end detach
+
+    /**
+     * Checks whether the object has a slot in its store.
      * 
-     * This method calculates the new velocity and position of the object
-     * based on its acceleration and the elapsed time.
+     * @return true unless the object was detached
+     */
+    public boolean isAttached() {
+        return slot >= 0;
+    }//end isAttached
+
+    /**
+     * Remembers the current position as the previous position.
      * 
-     * @param deltaTime the time elapsed since the last update, in seconds
+     * This method is called at the start of every update so that the object
+     * can be drawn in between two updates.
+     */
+    public void savePreviousState() {
+        store.prevX[slot] = store.x[slot];
+        store.prevY[slot] = store.y[slot];
+    }//end savePreviousState
+
+    /**
+     * Gets the x-coordinate to draw the object at, interpolated between the
+     * previous and the current update.
+     * 
+     * @param alpha how far the drawn frame is between the two updates (0 to 1)
+     * @return the interpolated x-coordinate
      */
-    protected void updatePhysics(double deltaTime) {
-        vx += deltaTime * ax; // Update velocity in the x direction
-        vy += deltaTime * ay; // Update velocity in the y direction
-        x += deltaTime * vx;  // Update position in the x direction
-        y += deltaTime * vy;  // Update position in the y direction
-    }//end updatePhysics
+    public double getRenderX(double alpha) {
+        return store.prevX[slot] + (store.x[slot] - store.prevX[slot]) * alpha;
+    }//end getRenderX
+
+    /**
+     * Gets the y-coordinate to draw the object at, interpolated between the
+     * previous and the current update.
+     * 
+     * @param alpha how far the drawn frame is between the two updates (0 to 1)
+     * @return the interpolated y-coordinate
+     */
+    public double getRenderY(double alpha) {
+        return store.prevY[slot] + (store.y[slot] - store.prevY[slot]) * alpha;
+    }//end getRenderY
+
+    /**
+     * Writes the position, velocity, acceleration, size, previous position and
+     * sprite of the object (see SaveGame). Subclasses add the state of their
+     * behavior after it.
+     * 
+     * @param out the buffer receiving the state
+     */
+    void writeState(ByteBuffer out) {
+        out.putDouble(store.x[slot]).putDouble(store.y[slot]);
+        out.putDouble(store.vx[slot]).putDouble(store.vy[slot]);
+        out.putDouble(store.ax[slot]).putDouble(store.ay[slot]);
+        out.putDouble(store.w[slot]).putDouble(store.h[slot]);
+        out.putDouble(store.prevX[slot]).putDouble(store.prevY[slot]);
+        out.putShort((short) sprite);
+    }//end writeState
+
+    /**
+     * Reads back the state written by writeState.
+     * 
+     * @param in the buffer holding the state
+     */
+    void readState(ByteBuffer in) {
+        store.x[slot] = in.getDouble();
+        store.y[slot] = in.getDouble();
+        store.vx[slot] = in.getDouble();
+        store.vy[slot] = in.getDouble();
+        store.ax[slot] = in.getDouble();
+        store.ay[slot] = in.getDouble();
+        store.w[slot] = in.getDouble();
+        store.h[slot] = in.getDouble();
+        store.prevX[slot] = in.getDouble();
+        store.prevY[slot] = in.getDouble();
+        sprite = in.getShort();
+    }//end readState
 
     /**
      * Updates the state of the game object.
      * 
-     * This method is intended to be called once per frame and delegates 
-     * physics updates to the `updatePhysics` method.
+     * This method is called once per update, after the EntityStore has
+     * integrated the physics. Game objects that have a behavior override it.
      * 
      * @param deltaTime the time elapsed since the last update, in seconds
      */
     public void update(double deltaTime) {
-        updatePhysics(deltaTime);
     }//end update
 
+    /**
+     * Puts the object to sleep or wakes it up. The EntityStore does not move
+     * sleeping objects.
+     * 
+     * @param asleep true to put the object to sleep
+     */
+    public void setAsleep(boolean asleep) {
+        store.asleep[slot] = asleep;
+    }//end setAsleep
+
+    /**
+     * Checks whether the object is asleep.
+     * 
+     * @return true if the EntityStore does not move the object
+     */
+    public boolean isAsleep() {
+        return store.asleep[slot];
+    }//end isAsleep
+
     /**
      * Gets the top (up) position of the game object.
      * 
      * @return the y-coordinate of the top of the object
      */
     public double getUp() {
-        return y;
+        return store.y[slot];
     }//end getUp
 
     /**
@@ -65,7 +174,7 @@ public abstract class GameObject {
      * @return the y-coordinate of the bottom of the object
      */
     public double getDown() {
-        return y + h;
+        return store.y[slot] + store.h[slot];
     }//end getDown
 
     /**
@@ -74,7 +183,7 @@ public abstract class GameObject {
      * @return the x-coordinate of the left side of the object
      */
     public double getLeft() {
-        return x;
+        return store.x[slot];
     }//end getLeft
 
     /**
@@ -83,16 +192,72 @@ public abstract class GameObject {
      * @return the x-coordinate of the right side of the object
      */
     public double getRight() {
-        return x + w;
+        return store.x[slot] + store.w[slot];
     }//end getRight
 
+    /**
+     * Gets the horizontal velocity of the game object.
+     * 
+     * @return the velocity along the x axis
+     */
+    public double getVelocityX() {
+        return store.vx[slot];
+    }//end getVelocityX
+
+    /**
+     * Gets the vertical velocity of the game object.
+     * 
+     * @return the velocity along the y axis
+     */
+    public double getVelocityY() {
+        return store.vy[slot];
+    }//end getVelocityY
+
+    /**
+     * Checks whether the bounding box of this object overlaps another one.
+     * 
+     * @param other the other game object
+     * @return true if the two bounding boxes overlap
+     */
+    public boolean overlaps(GameObject other) {
+        return (getDown() > other.getUp()) && (getRight() > other.getLeft())
+            && (getLeft() < other.getRight()) && (getUp() < other.getDown());
+    }//end overlaps
+
+    /**
+     * Gets the sprite the object is currently drawn with.
+     * 
+     * @return one of the SpriteId constants
+     */
+    public int getSprite() {
+        return sprite;
+    }//end getSprite
+
+    /**
+     * Gets the width of the game object.
+     * 
+     * @return the width of the object
+     */
+    public double getWidth() {
+        return store.w[slot];
+    }//end getWidth
+
+    /**
+     * Gets the height of the game object.
+     * 
+     * @return the height of the object
+     */
+    public double getHeight() {
+        return store.h[slot];
+    }//end getHeight
+
     /**
      * Sets the x-coordinate of the game object's position.
      * 
      * @param x the new x-coordinate
      */
     public void setX(double x) {
-        this.x = x;
+        store.x[slot] = x;
     }//end setX
 
     /**
@@ -101,7 +266,7 @@ public abstract class GameObject {
      * @param y the new y-coordinate
      */
     public void setY(double y) {
-        this.y = y;
+        store.y[slot] = y;
     }//end setY
 
 }//end class
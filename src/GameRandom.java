@@ -0,0 +1,52 @@
+/**
+ * A small, fast random number generator whose whole state is one long
+ * (the SplitMix64 algorithm).
+ *
+ * Unlike Math.random(), the generator can be seeded and its state can be read
+ * and restored, so a game started with the same seed and the same inputs
+ * always plays out the same way. That is what makes recordings replayable.
+ */
+public class GameRandom {
+
+    private long state; // The whole state of the generator
+
+    /**
+     * Constructs a generator.
+     *
+     * @param seed the initial state
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }//end constructor
+
+    /**
+     * Returns the next 64 random bits.
+     *
+     * @return a random long
+     */
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }//end nextLong
+
+    /**
+     * Returns a random number between 0 (included) and 1 (excluded).
+     *
+     * @return a random double
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }//end nextDouble
+
+    // Getters and setters of the state
+    public long getState() {
+        return state;
+    }//end getState
+
+    public void setState(long state) {
+        this.state = state;
+    }//end setState
+
+}//end class
@@ -0,0 +1,425 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * The GameRenderer draws the state of a Game with JavaFX.
+ *
+ * It is the only link between the simulation and the screen: it reads the
+ * positions and sprites of the game objects from a RenderSnapshot and turns
+ * them into draw calls on a GraphicsContext. It never reads the game itself,
+ * so the game may be updated on another thread while a frame is drawn.
+ * Sprites come from the AssetCache.
+ *
+ * The canvas is the size of the screen. Only the objects inside the window
+ * [xLvlOffset, xLvlOffset + WIDTH] are drawn: the tiles are found through the
+ * chunk covering each column and the snapshot only holds the enemies and stars
+ * found near the camera through the collision grids of the game, so the cost
+ * of a frame depends on what is visible and not on the size of the level.
+ * The platforms and lava are drawn from images rendered once per chunk (see
+ * TileLayer), and the score, lives and end text from an image rendered again
+ * only when they change (see HudLayer).
+ */
+public class GameRenderer {
+
+    private TileLayer tiles = new TileLayer(); // Pre-rendered platforms and lava
+    private HudLayer hud = new HudLayer(); // Pre-rendered score, lives and end text
+    private int drawnCount; // Objects drawn during the last frame
+    private int totalCount; // Objects in memory during the last frame (a chunk of tiles counts as one)
+    private StringBuilder text = new StringBuilder(); // Reused to build the lines of the profiler overlay
+    private static final Color BACKGROUND = Color.LIGHTGREY; // Behind the level
+    private static final Color PROFILER_BACKGROUND = Color.rgb(0, 0, 0, 0.6); // Behind the profiler overlay
+    private static final double PROFILER_LEFT = 5, PROFILER_TOP = 5, PROFILER_WIDTH = 330; // Box of the profiler overlay
+
+    // Paints only the parts of the screen that changed, as long as the camera does not move
+    public static final boolean DIRTY_RECTANGLES = Boolean.getBoolean("stickman.dirtyRects");
+
+    // Most dirty rectangles kept apart before they are merged into one
+    private static final int MAX_DIRTY = 32;
+
+    // Fraction of the screen above which the whole screen is painted instead
+    private static final double MAX_DIRTY_AREA = 0.5;
+
+    private double[] rects = new double[256]; // Screen box of each object this frame: left, top, right, bottom
+    private double[] lastRects = new double[256]; // Screen box of each object last frame
+    private int rectCount, lastRectCount; // Number of boxes in rects and lastRects
+    private double[] dirty = new double[MAX_DIRTY * 4]; // Rectangles to paint again: left, top, right, bottom
+    private int dirtyCount; // Number of rectangles in dirty
+    private double lastOffset = Double.NaN; // Camera offset of the last frame, NaN before the first frame
+    private LevelChunk lastFirstChunk; // First chunk in memory during the last frame
+    private int lastChunkCount; // Number of chunks in memory during the last frame
+    private boolean lastProfiler; // True if the profiler overlay was drawn last frame
+    private long fullRedraws; // Frames painted in full
+    private double repaintedArea; // Pixels painted during the last frame
+
+    /**
+     * Draws all game elements to the screen, including platforms, stickman,
+     * enemies, stars, and the UI elements (score, lives, and game-over text).
+     * Moving objects and the camera are drawn in between their previous and
+     * current positions.
+     *
+     * With DIRTY_RECTANGLES, only the parts of the screen that changed since
+     * the last frame are painted again, unless the camera moved.
+     *
+     * @param context  The JavaFX GraphicsContext for rendering.
+     * @param snapshot The state of the game to draw.
+     * @param alpha    How far the frame is between the previous and the current update (0 to 1).
+     */
+    public void draw(GraphicsContext context, RenderSnapshot snapshot, double alpha){
+        double offset = snapshot.getRenderXLvlOffset(alpha);
+        drawnCount = 0;
+        totalCount = 1 + snapshot.getEnemyCount() + snapshot.getStarCount() + snapshot.getChunks().size();
+
+        // Where every object is drawn this frame
+        long start = FrameProfiler.start();
+        rectCount = 0;
+        for(int i = 0; i < snapshot.getCount(); i++){
+            addRect(snapshot.getRenderX(i, alpha) - offset, snapshot.getRenderY(i, alpha),
+                    snapshot.getWidth(i), snapshot.getHeight(i));
+        }
+        boolean hudChanged = hud.update(snapshot.getScore(), snapshot.getNumLives(),
+                snapshot.isFinished(), snapshot.isWon());
+        ArrayList<LevelChunk> chunks = snapshot.getChunks();
+        LevelChunk firstChunk = chunks.isEmpty() ? null : chunks.get(0);
+        boolean full = !DIRTY_RECTANGLES || offset != lastOffset || firstChunk != lastFirstChunk
+                || chunks.size() != lastChunkCount || FrameProfiler.isEnabled() != lastProfiler
+                || !findDirty(hudChanged);
+        lastOffset = offset;
+        lastFirstChunk = firstChunk;
+        lastChunkCount = chunks.size();
+        lastProfiler = FrameProfiler.isEnabled();
+        double[] swap = lastRects;
+        lastRects = rects;
+        rects = swap;
+        lastRectCount = rectCount;
+
+        if (full) {
+            fullRedraws++;
+            repaintedArea = Main.WIDTH * Main.HEIGHT;
+            context.setFill(BACKGROUND);
+            context.fillRect(0, 0, Main.WIDTH, Main.HEIGHT);
+            FrameProfiler.stop(FrameProfiler.DIRTY, start);
+            drawScene(context, snapshot, offset, alpha, 0, 0, Main.WIDTH, Main.HEIGHT);
+            return;
+        }
+        if (dirtyCount == 0) {
+            repaintedArea = 0;
+            FrameProfiler.stop(FrameProfiler.DIRTY, start);
+            return; // Nothing moved: the canvas still shows the last frame
+        }
+
+        // Clip to the dirty rectangles, paint the background in them and draw what crosses them
+        double left = Main.WIDTH, top = Main.HEIGHT, right = 0, bottom = 0;
+        repaintedArea = 0;
+        context.save();
+        context.beginPath();
+        for (int i = 0; i < dirtyCount * 4; i += 4) {
+            context.rect(dirty[i], dirty[i + 1], dirty[i + 2] - dirty[i], dirty[i + 3] - dirty[i + 1]);
+            left = Math.min(left, dirty[i]);
+            top = Math.min(top, dirty[i + 1]);
+            right = Math.max(right, dirty[i + 2]);
+            bottom = Math.max(bottom, dirty[i + 3]);
+            repaintedArea += (dirty[i + 2] - dirty[i]) * (dirty[i + 3] - dirty[i + 1]);
+        }
+        context.clip();
+        context.setFill(BACKGROUND);
+        for (int i = 0; i < dirtyCount * 4; i += 4) {
+            context.fillRect(dirty[i], dirty[i + 1], dirty[i + 2] - dirty[i], dirty[i + 3] - dirty[i + 1]);
+        }
+        FrameProfiler.stop(FrameProfiler.DIRTY, start);
+        drawScene(context, snapshot, offset, alpha, left, top, right, bottom);
+        context.restore();
+    }//end draw
+
+    /**
+     * Draws the parts of the game that cross a rectangle of the screen.
+     *
+     * @param context  the GraphicsContext used for drawing
+     * @param snapshot the state of the game to draw
+     * @param offset   the horizontal offset of the camera
+     * @param alpha    how far the frame is between the previous and the current update
+     * @param left     the left side of the rectangle, on the screen
+     * @param top      the top of the rectangle
+     * @param right    the right side of the rectangle
+     * @param bottom   the bottom of the rectangle
+     */
+    private void drawScene(GraphicsContext context, RenderSnapshot snapshot, double offset, double alpha,
+            double left, double top, double right, double bottom){
+        //draw the stickman
+        long start = FrameProfiler.start();
+        if (crosses(0, left, top, right, bottom)) {
+            drawObject(context, snapshot, 0, offset, alpha);
+        }
+        FrameProfiler.stop(FrameProfiler.SPRITES, start);
+
+        //draw the platforms and the lava of the visible chunks
+        start = FrameProfiler.start();
+        ArrayList<LevelChunk> chunks = snapshot.getChunks();
+        if(!chunks.isEmpty()){
+            double chunkWidth = snapshot.getChunkColumns() * Main.TILE_SIZE;
+            int firstIndex = chunks.get(0).getIndex();
+            int first = Math.max(0, (int) Math.floor((offset + left) / chunkWidth) - firstIndex);
+            int last = Math.min(chunks.size() - 1, (int) Math.floor((offset + right) / chunkWidth) - firstIndex);
+            drawnCount += tiles.draw(context, chunks, first, last, offset);
+        }
+        FrameProfiler.stop(FrameProfiler.TILES, start);
+
+        //draw the enemies and the stars, which the snapshot keeps after the stickman
+        start = FrameProfiler.start();
+        for(int i = 1; i < snapshot.getCount(); i++){
+            if (crosses(i, left, top, right, bottom)) {
+                drawObject(context, snapshot, i, offset, alpha);
+            }
+        }
+        FrameProfiler.stop(FrameProfiler.SPRITES, start);
+
+        //draw the score, the lives and the end text from the cached overlay
+        start = FrameProfiler.start();
+        hud.draw(context);
+        FrameProfiler.stop(FrameProfiler.HUD, start);
+
+        //draws the profiler overlay
+        if (FrameProfiler.isEnabled()) {
+            drawProfiler(context, snapshot);
+        }
+    }//end drawScene
+
+    /**
+     * Adds the screen rectangle of an object, rounded out to whole pixels
+     * with a margin for the smoothing of the sprite.
+     */
+    private void addRect(double x, double y, double w, double h) {
+        if (rectCount * 4 == rects.length) {
+            rects = Arrays.copyOf(rects, rects.length * 2);
+            lastRects = Arrays.copyOf(lastRects, rects.length);
+        }
+        int i = rectCount * 4;
+        rects[i] = Math.floor(x) - 1;
+        rects[i + 1] = Math.floor(y) - 1;
+        rects[i + 2] = Math.ceil(x + w) + 1;
+        rects[i + 3] = Math.ceil(y + h) + 1;
+        rectCount++;
+    }//end addRect
+
+    /**
+     * Checks whether the rectangle of an object of this frame crosses a rectangle.
+     */
+    private boolean crosses(int object, double left, double top, double right, double bottom) {
+        int i = object * 4;
+        return lastRects[i] < right && lastRects[i + 2] > left && lastRects[i + 1] < bottom && lastRects[i + 3] > top;
+    }//end crosses
+
+    /**
+     * Finds the rectangles to paint again: where an object is drawn this frame
+     * but was not drawn last frame, where it was drawn last frame but is not
+     * anymore, the part of the HUD that changed and the profiler overlay.
+     *
+     * @return false if so much changed that the whole screen should be painted
+     */
+    private boolean findDirty(boolean hudChanged) {
+        dirtyCount = 0;
+        double area = 0;
+        for (int i = 0; i < rectCount; i++) {
+            if (!contains(lastRects, lastRectCount, rects, i)) {
+                area += addDirty(rects, i);
+            }
+        }
+        for (int i = 0; i < lastRectCount; i++) {
+            if (!contains(rects, rectCount, lastRects, i)) {
+                area += addDirty(lastRects, i);
+            }
+        }
+        if (hudChanged) {
+            area += addDirty(hud.getDirtyLeft(), hud.getDirtyTop(), hud.getDirtyRight(), hud.getDirtyBottom());
+        }
+        if (FrameProfiler.isEnabled()) {
+            area += addDirty(PROFILER_LEFT, PROFILER_TOP, PROFILER_LEFT + PROFILER_WIDTH, PROFILER_TOP + profilerHeight());
+        }
+        return area <= Main.WIDTH * Main.HEIGHT * MAX_DIRTY_AREA;
+    }//end findDirty
+
+    /**
+     * Checks whether a list of rectangles holds the same rectangle as another
+     * list. Objects keep their place in the snapshot from frame to frame, so
+     * the same position is looked at first.
+     */
+    private static boolean contains(double[] list, int count, double[] other, int index) {
+        int j = index * 4;
+        if (index < count && sameRect(list, j, other, j)) {
+            return true;
+        }
+        for (int i = 0; i < count * 4; i += 4) {
+            if (sameRect(list, i, other, j)) {
+                return true;
+            }
+        }
+        return false;
+    }//end contains
+
+    private static boolean sameRect(double[] a, int i, double[] b, int j) {
+        return a[i] == b[j] && a[i + 1] == b[j + 1] && a[i + 2] == b[j + 2] && a[i + 3] == b[j + 3];
+    }//end sameRect
+
+    /**
+     * Adds a rectangle of a list to the dirty rectangles.
+     *
+     * @return the area of the rectangle
+     */
+    private double addDirty(double[] list, int index) {
+        int i = index * 4;
+        return addDirty(list[i], list[i + 1], list[i + 2], list[i + 3]);
+    }//end addDirty
+
+    /**
+     * Adds a rectangle, cut to the screen, to the dirty rectangles. Once
+     * MAX_DIRTY rectangles are held, they are merged into their bounding box.
+     *
+     * @return the area of the rectangle
+     */
+    private double addDirty(double left, double top, double right, double bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(Main.WIDTH, right);
+        bottom = Math.min(Main.HEIGHT, bottom);
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+        if (dirtyCount == MAX_DIRTY) {
+            for (int i = 4; i < dirtyCount * 4; i += 4) {
+                dirty[0] = Math.min(dirty[0], dirty[i]);
+                dirty[1] = Math.min(dirty[1], dirty[i + 1]);
+                dirty[2] = Math.max(dirty[2], dirty[i + 2]);
+                dirty[3] = Math.max(dirty[3], dirty[i + 3]);
+            }
+            dirtyCount = 1;
+        }
+        int i = dirtyCount * 4;
+        dirty[i] = left;
+        dirty[i + 1] = top;
+        dirty[i + 2] = right;
+        dirty[i + 3] = bottom;
+        dirtyCount++;
+        return (right - left) * (bottom - top);
+    }//end addDirty
+
+    /**
+     * Draws the statistics of the FrameProfiler in the top left corner: the
+     * p50, p99 and maximum time of each phase over the last second, the
+     * number of objects and the garbage collections.
+     *
+     * @param context  the GraphicsContext used for drawing
+     * @param snapshot the state of the game being drawn
+     */
+    private void drawProfiler(GraphicsContext context, RenderSnapshot snapshot) {
+        context.setFill(PROFILER_BACKGROUND);
+        context.fillRect(PROFILER_LEFT, PROFILER_TOP, PROFILER_WIDTH, profilerHeight());
+        context.setFill(Color.WHITE);
+        context.setFont(AssetCache.getFont(14));
+
+        double y = 22;
+        context.fillText("phase          p50     p99     max (ms)", 12, y);
+        for (int phase = 0; phase < FrameProfiler.NAMES.length; phase++) {
+            LatencyHistogram histogram = FrameProfiler.getHistogram(phase);
+            text.setLength(0);
+            text.append(FrameProfiler.NAMES[phase]);
+            pad(14);
+            appendMillis(histogram.getPercentile(50));
+            pad(22);
+            appendMillis(histogram.getPercentile(99));
+            pad(30);
+            appendMillis(histogram.getMax());
+            y += 18;
+            context.fillText(text.toString(), 12, y);
+        }
+
+        text.setLength(0);
+        text.append("enemies ").append(snapshot.getEnemyCount()).append("  stars ").append(snapshot.getStarCount())
+            .append("  chunks ").append(snapshot.getChunks().size());
+        context.fillText(text.toString(), 12, y += 18);
+        text.setLength(0);
+        appendPool(snapshot.getEnemyPool());
+        text.append("  ");
+        appendPool(snapshot.getStarPool());
+        context.fillText(text.toString(), 12, y += 18);
+        text.setLength(0);
+        text.append("drawn ").append(drawnCount).append(" of ").append(totalCount).append("  repainted ")
+            .append((int) (100 * repaintedArea / (Main.WIDTH * Main.HEIGHT))).append("%  full ").append(fullRedraws);
+        context.fillText(text.toString(), 12, y += 18);
+        text.setLength(0);
+        text.append("gc last frame ").append(FrameProfiler.getFrameGcCount()).append(" (")
+            .append(FrameProfiler.getFrameGcTime()).append(" ms)  last second ")
+            .append(FrameProfiler.getWindowGcCount()).append(" (").append(FrameProfiler.getWindowGcTime()).append(" ms)");
+        context.fillText(text.toString(), 12, y += 18);
+    }//end drawProfiler
+
+    /**
+     * Gets the height of the profiler overlay.
+     */
+    private static double profilerHeight() {
+        return 18 * (FrameProfiler.NAMES.length + 5) + 10;
+    }//end profilerHeight
+
+    /**
+     * Adds the use of a pool to the overlay text: objects spawned, objects
+     * created, and how often the pool grew or was exhausted.
+     */
+    private void appendPool(RenderSnapshot.PoolUse pool) {
+        text.append(pool.getName()).append(' ').append(pool.getActive()).append('/').append(pool.getSize())
+            .append(" +").append(pool.getGrows()).append(" !").append(pool.getExhaustions());
+    }//end appendPool
+
+    /**
+     * Adds spaces to the overlay text until it reaches a given length.
+     */
+    private void pad(int length) {
+        while (text.length() < length) {
+            text.append(' ');
+        }
+    }//end pad
+
+    /**
+     * Adds a duration to the overlay text, in milliseconds with two decimals.
+     */
+    private void appendMillis(long nanos) {
+        long hundredths = (nanos + 5_000) / 10_000;
+        text.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10) {
+            text.append('0');
+        }
+        text.append(hundredths % 100);
+    }//end appendMillis
+
+    /**
+     * Draws an object of a snapshot with its sprite, in between its previous and current position.
+     *
+     * @param context   the GraphicsContext used for drawing
+     * @param snapshot  the state of the game being drawn
+     * @param i         the index of the object in the snapshot
+     * @param lvlOffset the horizontal offset of the camera
+     * @param alpha     the interpolation factor between the previous and current update
+     */
+    private void drawObject(GraphicsContext context, RenderSnapshot snapshot, int i, double lvlOffset, double alpha) {
+        AssetCache.getSprite(snapshot.getSprite(i)).draw(context, snapshot.getRenderX(i, alpha) - lvlOffset,
+                snapshot.getRenderY(i, alpha), snapshot.getWidth(i), snapshot.getHeight(i));
+        drawnCount++;
+    }//end drawObject
+
+    // Getters for the counters of the last frame
+    public int getDrawnCount() {
+        return drawnCount;
+    }//end getDrawnCount
+
+    public int getTotalCount() {
+        return totalCount;
+    }//end getTotalCount
+
+    public long getFullRedraws() {
+        return fullRedraws;
+    }//end getFullRedraws
+
+    public double getRepaintedArea() {
+        return repaintedArea;
+    }//end getRepaintedArea
+
+}//end class
@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Runs a game for several players on the same machine.
+ *
+ * The server is the authority: it alone runs Game.update, at a fixed tick
+ * rate, without JavaFX. Clients (see NetClient) send the keys they hold in
+ * small datagrams; after every tick the server sends each client the state of
+ * the game as a delta against the last state that client acknowledged (see
+ * NetState). A lost datagram costs nothing but a larger next delta.
+ *
+ * The game has a single stickman: the first client to connect controls it,
+ * the others watch the same game. A client that stays silent for
+ * CLIENT_TIMEOUT is forgotten, and the next client in line takes over. An
+ * input that arrives after a newer one from the same client is ignored.
+ *
+ * The keys of the controlling client are applied with Input.setPressed at the
+ * start of each tick, not through the ring of Input: the server runs on a
+ * single thread, so the ring would add nothing, and its latency counters do
+ * not cover network input. The time an input waited on the server is sent
+ * back to the client instead, which measures the whole round trip.
+ *
+ * Everything runs on one thread around a Selector, so the sockets are never
+ * blocking. The server counts the bytes and datagrams it sends and receives,
+ * and the time each tick takes.
+ *
+ * Usage: java GameServer [port] [tickRate]
+ *
+ * The levels are chosen with -Dstickman.level, as for the game.
+ */
+public class GameServer {
+
+    // Port the server listens on by default
+    public static final int PORT = Integer.getInteger("stickman.port", 7777);
+
+    // Types of datagram, the first byte of each
+    static final byte INPUT = 1; // Client to server: ack tick, keys and send time
+    static final byte SNAPSHOT = 2; // Server to client: echoed time, wait, tick length, then a NetState delta
+
+    // Largest datagram sent or received
+    static final int MAX_PACKET = 65_507;
+
+    // Number of past states kept to write deltas against
+    static final int HISTORY = 64;
+
+    // Time after which a silent client is forgotten, in nanoseconds
+    private static final long CLIENT_TIMEOUT = 5_000_000_000L;
+
+    // Time the server keeps sending the last state once the game is finished, in nanoseconds
+    private static final long FINISH_LINGER = 3_000_000_000L;
+
+    /**
+     * A client known to the server.
+     */
+    private static class Client {
+
+        private final SocketAddress address; // Where the datagrams of the client come from
+        private int ack = -1; // Last tick the client acknowledged, -1 for none
+        private long keys; // Keys held by the client, one bit per Key
+        private long sent = Long.MIN_VALUE; // Send time of the last input of the client, on the clock of the client
+        private long received; // Time the last input of the client was received
+        private long lastHeard; // Time of the last datagram of the client
+
+        Client(SocketAddress address) {
+            this.address = address;
+        }//end constructor
+
+    }//end class
+
+    private final Game game; // The game being run
+    private final long stepNanos; // Length of a tick, in nanoseconds
+    private final DatagramChannel channel; // The socket of the server
+    private final Selector selector; // Wakes the server when a datagram arrives
+    private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_PACKET); // Reused for received datagrams
+    private final ByteBuffer out = ByteBuffer.allocateDirect(MAX_PACKET); // Reused for sent datagrams
+    private final ArrayList<Client> clients = new ArrayList<>(); // Known clients, the controlling one first
+    private final NetState[] history = new NetState[HISTORY]; // Past states, by tick modulo HISTORY
+    private final IdentityHashMap<GameObject, Integer> netIds = new IdentityHashMap<>(); // Network id of each object
+    private int tick; // Number of ticks run
+    private volatile boolean running; // Cleared to stop the server
+
+    // Counters
+    private long bytesIn, bytesOut; // Bytes received and sent
+    private long packetsIn, packetsOut; // Datagrams received and sent
+    private long fullSnapshots, deltaSnapshots; // Snapshots sent without and with a base
+    private long oversized; // Snapshots too large for a datagram, not sent
+    private long staleInputs; // Inputs that arrived after a newer one, ignored
+    private LatencyHistogram tickTimes = new LatencyHistogram(); // Time taken by each tick, update and sending
+
+    /**
+     * Constructs a server and opens its socket.
+     *
+     * @param game     the game to run
+     * @param port     the port to listen on, 0 for any free port
+     * @param tickRate the number of ticks per second
+     * @throws IOException if the socket cannot be opened
+     */
+    public GameServer(Game game, int port, double tickRate) throws IOException {
+        this.game = game;
+        this.stepNanos = (long) (1e9 / tickRate);
+        for (int i = 0; i < HISTORY; i++) {
+            history[i] = new NetState();
+        }
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+    }//end constructor
+
+    /**
+     * Runs the game until stop is called, or until FINISH_LINGER after the
+     * game is finished, then closes the socket.
+     *
+     * @throws IOException if the socket fails
+     */
+    public void run() throws IOException {
+        running = true;
+        long nextTick = System.nanoTime();
+        long finishedAt = 0; // Time the game was seen finished, 0 while it is played
+        try {
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 1_000_000) {
+                    selector.select(wait / 1_000_000);
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                receive();
+
+                long now = System.nanoTime();
+                if (now >= nextTick) {
+                    step(now);
+                    nextTick += stepNanos;
+                    if (now - nextTick > stepNanos * 8) {
+                        nextTick = now; // Too far behind to catch up: drop the time
+                    }
+                }
+                if (game.isFinished() && finishedAt == 0) {
+                    finishedAt = now;
+                } else if (finishedAt != 0 && now - finishedAt > FINISH_LINGER) {
+                    running = false;
+                }
+            }
+        } finally {
+            selector.close();
+            channel.close();
+        }
+    }//end run
+
+    /**
+     * Asks the server to stop after its current tick. May be called from any thread.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }//end stop
+
+    /**
+     * Reads every datagram waiting on the socket.
+     */
+    private void receive() throws IOException {
+        while (true) {
+            in.clear();
+            SocketAddress from = channel.receive(in);
+            if (from == null) {
+                return;
+            }
+            in.flip();
+            bytesIn += in.remaining();
+            packetsIn++;
+            if (in.remaining() < 21 || in.get() != INPUT) {
+                continue; // Not a datagram of the game
+            }
+            Client client = find(from);
+            int ack = in.getInt();
+            if (ack > client.ack && ack <= tick && tick - ack < HISTORY) {
+                client.ack = ack;
+            }
+            long keys = in.getLong();
+            long sent = in.getLong();
+            client.lastHeard = System.nanoTime();
+            if (sent <= client.sent) {
+                staleInputs++;
+                continue; // Overtaken by a newer input: keep its keys
+            }
+            client.keys = keys;
+            client.sent = sent;
+            client.received = client.lastHeard;
+        }
+    }//end receive
+
+    /**
+     * Finds the client a datagram comes from, adding it if it is new.
+     */
+    private Client find(SocketAddress address) {
+        for (int i = 0; i < clients.size(); i++) {
+            if (clients.get(i).address.equals(address)) {
+                return clients.get(i);
+            }
+        }
+        Client client = new Client(address);
+        clients.add(client);
+        return client;
+    }//end find
+
+    /**
+     * Runs one tick with the keys of the controlling client and sends the new
+     * state to every client.
+     */
+    private void step(long now) throws IOException {
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            if (now - clients.get(i).lastHeard > CLIENT_TIMEOUT) {
+                clients.remove(i);
+            }
+        }
+        Input.setPressed(clients.isEmpty() ? 0 : clients.get(0).keys);
+        if (!game.isFinished()) {
+            game.update(stepNanos * 1e-9);
+        }
+        tick++;
+        NetState state = history[tick % HISTORY];
+        state.capture(game, tick, netIds);
+
+        for (int i = 0; i < clients.size(); i++) {
+            send(clients.get(i), state);
+        }
+        tickTimes.record(System.nanoTime() - now);
+    }//end step
+
+    /**
+     * Sends a state to a client, as a delta against the last state it acknowledged.
+     */
+    private void send(Client client, NetState state) throws IOException {
+        NetState base = client.ack >= 0 && tick - client.ack < HISTORY ? history[client.ack % HISTORY] : null;
+        if (base != null && base.getTick() != client.ack) {
+            base = null;
+        }
+        out.clear();
+        out.put(SNAPSHOT);
+        out.putLong(client.sent); // Lets the client measure the time from its input to the state
+        out.putLong(System.nanoTime() - client.received); // Time the input waited on the server
+        out.putInt((int) (stepNanos / 1000)); // Length of a tick in microseconds, to interpolate
+        try {
+            state.writeDelta(base, out);
+        } catch (BufferOverflowException e) {
+            oversized++;
+            return;
+        }
+        out.flip();
+        bytesOut += out.remaining();
+        packetsOut++;
+        if (base == null) {
+            fullSnapshots++;
+        } else {
+            deltaSnapshots++;
+        }
+        channel.send(out, client.address);
+    }//end send
+
+    /**
+     * Starts a server on a new game and prints its counters every second.
+     *
+     * @param args the port (default PORT) and the number of ticks per second (default 60)
+     * @throws IOException if the socket cannot be opened or the levels cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        double tickRate = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+        Game game = new Game(Game.sequenceOf(System.getProperty("stickman.level", "")));
+        GameServer server = new GameServer(game, port, tickRate);
+
+        Thread report = Thread.ofPlatform().daemon().start(() -> {
+            long lastIn = 0, lastOut = 0;
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long bytesIn = server.getBytesIn(), bytesOut = server.getBytesOut();
+                System.out.printf("tick=%d clients=%d in=%d B/s out=%d B/s full=%d delta=%d tick p50=%.3f ms p99=%.3f ms%n",
+                        server.getTick(), server.getClientCount(), bytesIn - lastIn, bytesOut - lastOut,
+                        server.getFullSnapshots(), server.getDeltaSnapshots(),
+                        server.getTickTimes().getPercentile(50) * 1e-6, server.getTickTimes().getPercentile(99) * 1e-6);
+                lastIn = bytesIn;
+                lastOut = bytesOut;
+            }
+        });
+        System.out.println("listening on port " + port);
+        server.run();
+        report.interrupt();
+        System.out.printf("finished: score=%d lives=%d won=%b%n", game.getScore(), game.getNumLives(), game.isWon());
+    }//end main
+
+    // Getters for the counters. Read from another thread they are only estimates.
+    public int getTick() {
+        return tick;
+    }//end getTick
+
+    public int getClientCount() {
+        return clients.size();
+    }//end getClientCount
+
+    public long getBytesIn() {
+        return bytesIn;
+    }//end getBytesIn
+
+    public long getBytesOut() {
+        return bytesOut;
+    }//end getBytesOut
+
+    public long getPacketsIn() {
+        return packetsIn;
+    }//end getPacketsIn
+
+    public long getPacketsOut() {
+        return packetsOut;
+    }//end getPacketsOut
+
+    public long getFullSnapshots() {
+        return fullSnapshots;
+    }//end getFullSnapshots
+
+    public long getDeltaSnapshots() {
+        return deltaSnapshots;
+    }//end getDeltaSnapshots
+
+    public long getOversized() {
+        return oversized;
+    }//end getOversized
+
+    public long getStaleInputs() {
+        return staleInputs;
+    }//end getStaleInputs
+
+    public LatencyHistogram getTickTimes() {
+        return tickTimes;
+    }//end getTickTimes
+
+}//end class
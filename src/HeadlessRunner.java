@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Runs the game simulation without the JavaFX toolkit.
+ *
+ * The stickman is driven by a simple scripted player (run right, jump every
+ * second) so that the run exercises movement, enemies and collisions. The
+ * runner reports how many ticks per second the simulation reached, which makes
+ * it usable on CI servers and for bot or load tests.
+ *
+ * Usage: java HeadlessRunner [ticks] [tickRate]
+ *
+ * With -Dstickman.record=file, the run is saved as a Recording that Replay
+ * can play back.
+ */
+public class HeadlessRunner {
+
+    /**
+     * Runs the simulation and prints the tick rate that was reached.
+     *
+     * @param args the number of ticks to run (default 100000) and the
+     *             simulation rate in ticks per second (default 120)
+     * @throws IOException if the recording cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        double tickRate = args.length > 1 ? Double.parseDouble(args[1]) : 120;
+        double step = 1.0 / tickRate;
+
+        Game game = new Game();
+        String record = System.getProperty("stickman.record");
+        Recording recording = record == null ? null
+                : new Recording(System.getProperty("stickman.level", ""), step, game.getSeed());
+        long start = System.nanoTime();
+        long run = 0;
+        while (run < ticks && !game.isFinished()) {
+            scriptInput(run, tickRate);
+            if (recording != null) {
+                recording.record(Input.getPressed());
+            }
+            game.update(step);
+            run++;
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+
+        System.out.printf("ticks=%d time=%.3fs rate=%.0f ticks/s%n", run, seconds, run / seconds);
+        System.out.printf("score=%d lives=%d x=%.1f finished=%b%n", game.getScore(), game.getNumLives(),
+                game.getStickman().getLeft(), game.isFinished());
+        if (recording != null) {
+            recording.finish(game);
+            recording.write(Path.of(record));
+            System.out.printf("recorded %d ticks in %d runs to %s%n", recording.getTicks(), recording.getRuns(), record);
+        }
+    }//end main
+
+    /**
+     * Presses the keys of the scripted player for a given tick.
+     *
+     * @param tick     the number of the tick about to run
+     * @param tickRate the number of ticks per second
+     */
+    private static void scriptInput(long tick, double tickRate) {
+        long second = (long) tickRate;
+        Input.setKeyPressed(Key.RIGHT, (tick / (4 * second)) % 2 == 0); // Run right for 4 s, then left
+        Input.setKeyPressed(Key.LEFT, (tick / (4 * second)) % 2 == 1);
+        Input.setKeyPressed(Key.UP, tick % second < 2); // Jump once per second
+    }//end scriptInput
+
+}//end class
@@ -0,0 +1,241 @@
+import java.nio.IntBuffer;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * Draws the score, the lives and the end banner from a cached overlay image.
+ *
+ * The text and the heart are rasterized once into small glyph images: the
+ * "Score: " label, the ten digits, the heart and the two banners. The overlay
+ * is composed from those glyphs by copying their pixels, and only when the
+ * score, the lives or the end of the game change. Every other frame the HUD
+ * costs a single drawImage, and a new score is laid out digit by digit
+ * without building a string.
+ *
+ * The overlay remembers the box around the glyphs it changed, so a renderer
+ * that only repaints the dirty parts of the screen knows what to repaint.
+ *
+ * The glyphs are built the first time the HUD is updated, since rasterizing
+ * text needs the JavaFX thread and the sprites of the AssetCache.
+ */
+public class HudLayer {
+
+    // Where the HUD elements are drawn, as before the HUD was cached
+    private static final double SCORE_X = World.WIDTH * 0.1; // Left of the score
+    private static final double SCORE_BASELINE = World.HEIGHT * 0.1; // Baseline of the score
+    private static final double LIVES_X = World.WIDTH * 0.8; // Left of the first heart
+    private static final double LIVES_Y = World.HEIGHT * 0.1 - 40; // Top of the hearts
+    private static final double HEART_SIZE = 40, HEART_SPACING = 50; // Size and distance of the hearts
+    private static final double BANNER_X = World.WIDTH * 0.4; // Left of the end banner
+    private static final double BANNER_BASELINE = World.HEIGHT / 2; // Baseline of the end banner
+    private static final int SCORE_FONT = 30, BANNER_FONT = 60; // Font sizes
+
+    /**
+     * A piece of text or an image rasterized once.
+     */
+    private static class Glyph {
+
+        private final WritableImage image; // Pixels of the glyph
+        private final int width, height; // Size of the image
+        private final int baseline; // Distance from the top of the image to the baseline of the text
+
+        Glyph(WritableImage image, int baseline) {
+            this.image = image;
+            this.width = (int) image.getWidth();
+            this.height = (int) image.getHeight();
+            this.baseline = baseline;
+        }//end constructor
+
+    }//end class
+
+    private Glyph label; // "Score: "
+    private Glyph[] digits; // "0" to "9"
+    private Glyph heart; // One life
+    private Glyph gameOver, escaped; // The end banners
+    private WritableImage overlay; // The composed HUD, from the top of the screen down to the banner
+    private int[] clear = new int[0]; // One transparent line of the overlay
+    private int[] scoreDigits = new int[10]; // Digits of the score, last digit first
+
+    private int score = -1, numLives = -1; // Values in the overlay, -1 before the first frame
+    private boolean finished, won; // State of the game in the overlay
+    private int contentLeft, contentTop, contentRight, contentBottom; // Box around the glyphs in the overlay
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom; // Box around the glyphs before and after the last change
+    private long rebuilds; // Number of times the overlay was composed
+
+    /**
+     * Composes the overlay again if a value changed since the last call.
+     *
+     * @param score    the score of the player
+     * @param numLives the lives left
+     * @param finished true if the game is over
+     * @param won      true if the game ended at the end of the last level
+     * @return true if the overlay changed; getDirtyLeft and the other getters
+     *         then give the part of the screen it changed in
+     */
+    public boolean update(int score, int numLives, boolean finished, boolean won) {
+        if (overlay == null) {
+            build();
+        }
+        if (score == this.score && numLives == this.numLives && finished == this.finished && won == this.won) {
+            return false;
+        }
+        this.score = score;
+        this.numLives = numLives;
+        this.finished = finished;
+        this.won = won;
+        compose();
+        return true;
+    }//end update
+
+    /**
+     * Draws the overlay as it was last composed.
+     *
+     * @param context the GraphicsContext used for drawing
+     */
+    public void draw(GraphicsContext context) {
+        context.drawImage(overlay, 0, 0);
+    }//end draw
+
+    /**
+     * Rasterizes the glyphs and creates the overlay.
+     */
+    private void build() {
+        label = text("Score: ", SCORE_FONT, Color.BLACK);
+        digits = new Glyph[10];
+        for (int i = 0; i < 10; i++) {
+            digits[i] = text(String.valueOf(i), SCORE_FONT, Color.BLACK);
+        }
+        gameOver = text("GAME OVER", BANNER_FONT, Color.RED);
+        escaped = text("YOU ESCAPED", BANNER_FONT, Color.RED);
+
+        Canvas canvas = new Canvas(HEART_SIZE, HEART_SIZE);
+        AssetCache.getSprite(SpriteId.HEART).draw(canvas.getGraphicsContext2D(), 0, 0, HEART_SIZE, HEART_SIZE);
+        heart = new Glyph(snapshot(canvas), 0);
+
+        int width = (int) World.WIDTH;
+        int height = (int) Math.ceil(BANNER_BASELINE + Math.max(gameOver.height - gameOver.baseline,
+                escaped.height - escaped.baseline));
+        overlay = new WritableImage(width, height);
+        clear = new int[width];
+    }//end build
+
+    /**
+     * Rasterizes a piece of text.
+     */
+    private static Glyph text(String text, int size, Color color) {
+        Font font = AssetCache.getFont(size);
+        Text measure = new Text(text);
+        measure.setFont(font);
+        double baseline = measure.getBaselineOffset();
+        Canvas canvas = new Canvas(Math.ceil(measure.getLayoutBounds().getWidth()),
+                Math.ceil(measure.getLayoutBounds().getHeight()));
+        GraphicsContext context = canvas.getGraphicsContext2D();
+        context.setFont(font);
+        context.setFill(color);
+        context.fillText(text, 0, baseline);
+        return new Glyph(snapshot(canvas), (int) Math.round(baseline));
+    }//end text
+
+    /**
+     * Copies what is drawn on a canvas into an image with a transparent background.
+     */
+    private static WritableImage snapshot(Canvas canvas) {
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(parameters, null);
+    }//end snapshot
+
+    /**
+     * Clears the overlay and copies the glyphs of the current values into it.
+     */
+    private void compose() {
+        PixelWriter writer = overlay.getPixelWriter();
+        PixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        writer.setPixels(0, 0, clear.length, (int) overlay.getHeight(), format, clear, 0, 0);
+        dirtyLeft = contentLeft;
+        dirtyTop = contentTop;
+        dirtyRight = contentRight;
+        dirtyBottom = contentBottom;
+        contentLeft = contentTop = Integer.MAX_VALUE;
+        contentRight = contentBottom = 0;
+
+        // The score, digit after digit
+        double x = SCORE_X;
+        double y = SCORE_BASELINE;
+        copy(writer, label, x, y - label.baseline);
+        x += label.width;
+        int count = 0;
+        int rest = Math.max(0, score);
+        do {
+            scoreDigits[count++] = rest % 10;
+            rest /= 10;
+        } while (rest > 0);
+        while (count > 0) {
+            Glyph digit = digits[scoreDigits[--count]];
+            copy(writer, digit, x, y - digit.baseline);
+            x += digit.width;
+        }
+
+        // The lives
+        for (int i = 0; i < numLives; i++) {
+            copy(writer, heart, LIVES_X + HEART_SPACING * i, LIVES_Y);
+        }
+
+        // The end banner
+        if (finished) {
+            Glyph banner = won ? escaped : gameOver;
+            copy(writer, banner, BANNER_X, BANNER_BASELINE - banner.baseline);
+        }
+        dirtyLeft = Math.min(dirtyLeft, contentLeft);
+        dirtyTop = Math.min(dirtyTop, contentTop);
+        dirtyRight = Math.max(dirtyRight, contentRight);
+        dirtyBottom = Math.max(dirtyBottom, contentBottom);
+        rebuilds++;
+    }//end compose
+
+    /**
+     * Copies a glyph into the overlay, cut to the size of the overlay.
+     */
+    private void copy(PixelWriter writer, Glyph glyph, double x, double y) {
+        int left = (int) Math.round(x);
+        int top = (int) Math.round(y);
+        int width = Math.min(glyph.width, (int) overlay.getWidth() - left);
+        int height = Math.min(glyph.height, (int) overlay.getHeight() - top);
+        if (left >= 0 && top >= 0 && width > 0 && height > 0) {
+            writer.setPixels(left, top, width, height, glyph.image.getPixelReader(), 0, 0);
+            contentLeft = Math.min(contentLeft, left);
+            contentTop = Math.min(contentTop, top);
+            contentRight = Math.max(contentRight, left + width);
+            contentBottom = Math.max(contentBottom, top + height);
+        }
+    }//end copy
+
+    // Getters
+    public int getDirtyLeft() {
+        return dirtyLeft;
+    }//end getDirtyLeft
+
+    public int getDirtyTop() {
+        return dirtyTop;
+    }//end getDirtyTop
+
+    public int getDirtyRight() {
+        return dirtyRight;
+    }//end getDirtyRight
+
+    public int getDirtyBottom() {
+        return dirtyBottom;
+    }//end getDirtyBottom
+
+    public long getRebuilds() {
+        return rebuilds;
+    }//end getRebuilds
+
+}//end class
@@ -1,42 +1,158 @@
-import javafx.scene.input.KeyCode;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A utility class for managing keyboard input in a game.
- * 
+ *
  * The `Input` class tracks the state of keyboard keys, allowing other parts of
  * the game to inquire whether specific keys are currently pressed or released.
- * It uses a HashMap to store the state of each key, where the key is 
- * a KeyCode and the value is a boolean indicating whether the key 
- * is pressed.
+ * The state of every key is one bit of a long, indexed by the ordinal of its
+ * Key, so checking a key does not allocate or hash anything. The JavaFX front
+ * end translates its key codes into Keys.
+ *
+ * Key events may come from another thread than the simulation: the front end
+ * posts them with a timestamp into a lock-free single-producer,
+ * single-consumer ring buffer, and the simulation drains it once per tick.
+ * The time between posting and draining an event is recorded, which measures
+ * the input latency of the simulation.
  */
 public class Input {
-    
-    // A map to store the current pressed state of keys, where KeyCode is the key
-    // and a boolean represents whether the key is pressed (true) or released (false).
-    private static HashMap<KeyCode, Boolean> keys = new HashMap<>(); 
-    
+
+    // Number of events the ring buffer holds (a power of two)
+    private static final int CAPACITY = 256;
+
+    // One bit per Key, set while the key is pressed. Only used by the simulation thread.
+    private static long pressed;
+
+    private static final long[] times = new long[CAPACITY]; // Time each queued event was posted, in nanoseconds
+    private static final byte[] events = new byte[CAPACITY]; // Ordinal of the key of each event, times 2, plus 1 if pressed
+    private static final AtomicLong head = new AtomicLong(); // Number of events drained so far
+    private static final AtomicLong tail = new AtomicLong(); // Number of events posted so far
+    private static long droppedEvents; // Events lost because the buffer was full (producer side)
+
+    private static long drainedEvents; // Events applied by drain
+    private static long totalLatency; // Sum of the latencies of the drained events, in nanoseconds
+    private static long maxLatency; // Largest latency of a drained event, in nanoseconds
+
     /**
      * Checks if a specific key is currently pressed.
-     * 
-     * @param code the KeyCode of the key to check
+     *
+     * @param code the Key of the key to check
      * @return true if the key is pressed, false otherwise
      */
-    public static boolean isKeyPressed(KeyCode code) {
-        // Returns the pressed state of the key or false if the key isn't in the map
-        return keys.getOrDefault(code, false);
+    public static boolean isKeyPressed(Key code) {
+        return (pressed & (1L << code.ordinal())) != 0;
     }//end isKeyPressed
 
     /**
-     * Updates the pressed state of a specific key.
-     * 
-     * This method should be called whenever a key event is detected to
-     * update the key's current state in the map.
-     * 
-     * @param code      the KeyCode of the key to update
+     * Updates the pressed state of a specific key right away.
+     *
+     * This method must be called from the simulation thread (for example by a
+     * scripted player). Front ends running on another thread use post.
+     *
+     * @param code      the Key of the key to update
      * @param isPressed true if the key is pressed, false if released
      */
-    public static void setKeyPressed(KeyCode code, boolean isPressed) {
-        keys.put(code, isPressed);
+    public static void setKeyPressed(Key code, boolean isPressed) {
+        if (isPressed) {
+            pressed |= 1L << code.ordinal();
+        } else {
+            pressed &= ~(1L << code.ordinal());
+        }
     }//end setKeyPressed
-}//end class
\ No newline at end of file
+
+    /**
+     * Gets the state of every key at once.
+     *
+     * @return one bit per Key, indexed by its ordinal, set if the key is pressed
+     */
+    public static long getPressed() {
+        return pressed;
+    }//end getPressed
+
+    /**
+     * Sets the state of every key at once, for example to replay a recording.
+     * This method must be called from the simulation thread.
+     *
+     * @param keys one bit per Key, indexed by its ordinal, set if the key is pressed
+     */
+    public static void setPressed(long keys) {
+        pressed = keys;
+    }//end setPressed
+
+    /**
+     * Queues a key event for the next simulation tick.
+     *
+     * Only one thread may post events. The event is dropped if the simulation
+     * has not drained the buffer for CAPACITY events.
+     *
+     * @param code      the Key of the key that changed
+     * @param isPressed true if the key was pressed, false if released
+     * @param time      the time of the event, from System.nanoTime()
+     * @return true if the event was queued, false if it was dropped
+     */
+    public static boolean post(Key code, boolean isPressed, long time) {
+        long position = tail.get();
+        if (position - head.getAcquire() == CAPACITY) {
+            droppedEvents++;
+            return false;
+        }
+        int index = (int) (position & (CAPACITY - 1));
+        times[index] = time;
+        events[index] = (byte) (code.ordinal() << 1 | (isPressed ? 1 : 0));
+        tail.setRelease(position + 1); // Publishes the event to the simulation thread
+        return true;
+    }//end post
+
+    /**
+     * Applies every queued key event, in the order they were posted. Called
+     * by the simulation thread once per tick.
+     *
+     * @param now the current time, from System.nanoTime()
+     * @return the number of events applied
+     */
+    public static int drain(long now) {
+        long position = head.get();
+        long end = tail.getAcquire();
+        int count = 0;
+        while (position < end) {
+            int index = (int) (position & (CAPACITY - 1));
+            int event = events[index];
+            long latency = now - times[index];
+            position++;
+
+            if ((event & 1) != 0) {
+                pressed |= 1L << (event >> 1);
+            } else {
+                pressed &= ~(1L << (event >> 1));
+            }
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            count++;
+        }
+        head.setRelease(position); // Gives the slots back to the producer
+        drainedEvents += count;
+        return count;
+    }//end drain
+
+    // Getters for the latency statistics
+    public static long getDrainedEvents() {
+        return drainedEvents;
+    }//end getDrainedEvents
+
+    public static long getDroppedEvents() {
+        return droppedEvents;
+    }//end getDroppedEvents
+
+    /**
+     * Gets the average time between posting an event and applying it.
+     *
+     * @return the average latency in nanoseconds, or 0 if no event was drained
+     */
+    public static long getAverageLatency() {
+        return drainedEvents == 0 ? 0 : totalLatency / drainedEvents;
+    }//end getAverageLatency
+
+    public static long getMaxLatency() {
+        return maxLatency;
+    }//end getMaxLatency
+}//end class
@@ -0,0 +1,12 @@
+/**
+ * The keys the simulation reacts to.
+ *
+ * The game logic only knows about these abstract keys; the JavaFX front end
+ * translates the key codes of the keyboard into them. This keeps the
+ * simulation free of any JavaFX type.
+ */
+public enum Key {
+    LEFT,  // Run left
+    RIGHT, // Run right
+    UP     // Jump
+}//end enum
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * A histogram of durations with a fixed number of buckets.
+ *
+ * Durations are sorted into buckets whose width grows with the duration: each
+ * power of two is split into 8 buckets, so any percentile is known to within
+ * 12.5% while the whole range of a long fits into 512 counters. Recording a
+ * value does not allocate, so histograms can be filled every frame.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3; // Bits of precision kept below the highest set bit
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // Buckets per power of two
+    private static final int BUCKETS = 64 * SUB_BUCKETS; // Buckets for every non-negative long
+
+    private final long[] counts = new long[BUCKETS]; // Number of values recorded in each bucket
+    private long count; // Number of values recorded
+    private long total; // Sum of the values recorded
+    private long max; // Largest value recorded
+
+    /**
+     * Records one value.
+     *
+     * @param value the value, usually a duration in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        total += value;
+        if (value > max) {
+            max = value;
+        }
+    }//end record
+
+    /**
+     * Gets a percentile of the recorded values.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return an upper bound of the percentile, never more than the maximum, or 0 if the histogram is empty
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(lowest(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }//end getPercentile
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }//end reset
+
+    /**
+     * Gets the bucket of a value.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+    }//end index
+
+    /**
+     * Gets the smallest value of a bucket.
+     */
+    private static long lowest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        if (exponent >= 63) {
+            return Long.MAX_VALUE; // The buckets past the largest long
+        }
+        long mantissa = SUB_BUCKETS + index % SUB_BUCKETS;
+        return mantissa << (exponent - SUB_BITS);
+    }//end lowest
+
+    // Getters
+    public long getCount() {
+        return count;
+    }//end getCount
+
+    public long getMax() {
+        return max;
+    }//end getMax
+
+    public long getMean() {
+        return count == 0 ? 0 : total / count;
+    }//end getMean
+
+}//end class
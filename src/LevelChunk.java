@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+
+/**
+ * A vertical slice of a level made of a fixed number of columns.
+ *
+ * A chunk holds the platform and lava tiles of its columns and the positions
+ * where its enemies and stars appear. Chunks are built from a LevelSource,
+ * possibly on a background thread, and never change once built.
+ */
+public class LevelChunk {
+
+    private final int index; // Position of the chunk in the level (0 for the leftmost)
+    private final int firstColumn; // First column of the level covered by the chunk
+    private final int columns; // Number of columns covered by the chunk
+    private final EntityStore tiles; // Positions and sizes of the tiles of the chunk
+    private final Platform[] platforms; // Platform tiles of the chunk
+    private final Lava[] lava; // Lava tiles of the chunk
+    private final double[] enemySpawns; // x and y of each enemy, one pair after the other
+    private final double[] starSpawns; // x and y of each star, one pair after the other
+
+    /**
+     * Builds the chunk of a level with a given index.
+     *
+     * @param level        the level to read the tiles from
+     * @param index        the index of the chunk
+     * @param chunkColumns the number of columns of every chunk
+     */
+    public LevelChunk(LevelSource level, int index, int chunkColumns) {
+        this.index = index;
+        this.firstColumn = index * chunkColumns;
+        this.columns = Math.min(chunkColumns, level.getColumns() - firstColumn);
+
+        this.tiles = new EntityStore(chunkColumns * level.getRows());
+        ArrayList<Platform> platformList = new ArrayList<>();
+        ArrayList<Lava> lavaList = new ArrayList<>();
+        ArrayList<Double> enemyList = new ArrayList<>();
+        ArrayList<Double> starList = new ArrayList<>();
+        for (int i = 0; i < level.getRows(); i++) {
+            for (int j = firstColumn; j < firstColumn + columns; j++) {
+                double x = j * World.TILE_SIZE;
+                double y = i * World.TILE_SIZE;
+                switch (level.getTile(j, i)) {
+                    case '1':
+                        platformList.add(new Platform(tiles, x, y, World.TILE_SIZE, World.TILE_SIZE));
+                        break;
+                    case '2':
+                        enemyList.add(x);
+                        enemyList.add(y);
+                        break;
+                    case '3':
+                        lavaList.add(new Lava(tiles, x, y, World.TILE_SIZE, World.TILE_SIZE));
+                        break;
+                    case '4':
+                        starList.add(x + 15);
+                        starList.add(y);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        this.platforms = platformList.toArray(new Platform[0]);
+        this.lava = lavaList.toArray(new Lava[0]);
+        this.enemySpawns = toArray(enemyList);
+        this.starSpawns = toArray(starList);
+    }//end constructor
+
+    private static double[] toArray(ArrayList<Double> list) {
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }//end toArray
+
+    // Getters
+    public int getIndex() {
+        return index;
+    }//end getIndex
+
+    public int getFirstColumn() {
+        return firstColumn;
+    }//end getFirstColumn
+
+    public int getColumns() {
+        return columns;
+    }//end getColumns
+
+    public double getLeft() {
+        return firstColumn * World.TILE_SIZE;
+    }//end getLeft
+
+    public double getRight() {
+        return (firstColumn + columns) * World.TILE_SIZE;
+    }//end getRight
+
+    public Platform[] getPlatforms() {
+        return platforms;
+    }//end getPlatforms
+
+    public Lava[] getLava() {
+        return lava;
+    }//end getLava
+
+    public double[] getEnemySpawns() {
+        return enemySpawns;
+    }//end getEnemySpawns
+
+    public double[] getStarSpawns() {
+        return starSpawns;
+    }//end getStarSpawns
+
+}//end class
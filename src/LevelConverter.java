@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Converts levels from the string format of the Levels class to the binary
+ * format read by BinaryLevel.
+ *
+ * Usage: java LevelConverter output.lvl [input.txt] [copies]
+ *
+ * The input is a text file with one row of the level per line. Without an
+ * input file (or with "-"), Levels.LEVEL_1 is converted. The level can be
+ * repeated a number of times side by side to make long test levels; the
+ * repeated level is never built as strings.
+ */
+public class LevelConverter {
+
+    /**
+     * Converts a level and checks that the written file reads back the same.
+     *
+     * @param args the output file, the optional input file and number of copies
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java LevelConverter output.lvl [input.txt] [copies]");
+            System.exit(1);
+        }
+        Path output = Path.of(args[0]);
+        String[] rows = Levels.LEVEL_1;
+        if (args.length > 1 && !args[1].equals("-")) {
+            List<String> lines = Files.readAllLines(Path.of(args[1]));
+            lines.removeIf(String::isBlank);
+            rows = lines.toArray(new String[0]);
+        }
+        int copies = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        LevelSource level = repeat(new StringLevel(rows), copies);
+
+        long start = System.nanoTime();
+        BinaryLevel.write(level, output);
+        long written = System.nanoTime();
+        BinaryLevel loaded = BinaryLevel.open(output);
+        long opened = System.nanoTime();
+
+        for (int column = 0; column < level.getColumns(); column++) {
+            for (int row = 0; row < level.getRows(); row++) {
+                if (loaded.getTile(column, row) != level.getTile(column, row)) {
+                    throw new IOException("Mismatch at column " + column + ", row " + row);
+                }
+            }
+        }
+        System.out.printf("%s: %d x %d tiles, %d bytes, written in %.1f ms, opened in %.3f ms%n", output,
+                loaded.getColumns(), loaded.getRows(), Files.size(output), (written - start) * 1e-6,
+                (opened - written) * 1e-6);
+    }//end main
+
+    /**
+     * Makes a level that repeats another level side by side.
+     *
+     * @param level  the level to repeat
+     * @param copies the number of copies
+     * @return the repeated level
+     */
+    public static LevelSource repeat(LevelSource level, int copies) {
+        return new LevelSource() {
+            @Override
+            public int getColumns() {
+                return level.getColumns() * copies;
+            }//end getColumns
+
+            @Override
+            public int getRows() {
+                return level.getRows();
+            }//end getRows
+
+            @Override
+            public char getTile(int column, int row) {
+                return level.getTile(column % level.getColumns(), row);
+            }//end getTile
+        };
+    }//end repeat
+
+}//end class
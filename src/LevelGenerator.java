@@ -0,0 +1,355 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A level made up from a seed, at any width and with any number of enemies
+ * and stars, for scaling and stress tests.
+ *
+ * The level uses the legend of Levels.LEVEL_1 and has the height of the
+ * screen. It is cut into segments of SEGMENT columns, and the seed picks what
+ * each segment holds: flat ground, a lava pit, a block to jump over, or a
+ * floating platform. The first and last segments are always flat. The
+ * enemies and stars are spread evenly over the columns after the first
+ * segments, at most one star per column; the seed picks their rows.
+ *
+ * No tile is stored: each tile is computed from the seed when it is asked
+ * for, so a level of a million columns takes no memory and can be read from
+ * several threads at once. The same arguments always give the same level.
+ *
+ * The segments are made so the stickman can always get to the end: pits are
+ * at most MAX_PIT columns wide, blocks at most MAX_STEP tiles high, and
+ * floating platforms stay clear of both and high enough to walk under.
+ * findObstacle checks those rules on any level.
+ *
+ * In the game, a level of the stickman.level list may be written
+ * generated:columns[:enemies[:stars[:seed]]], for example
+ * generated:1000000:50000:20000:7.
+ *
+ * Usage: java LevelGenerator columns [enemies] [stars] [seed] [output.lvl]
+ */
+public class LevelGenerator implements LevelSource {
+
+    // Prefix of a generated level in a list of level files (see Game.sequenceOf)
+    public static final String PREFIX = "generated:";
+
+    public static final int SEGMENT = 8; // Columns of a segment
+    public static final int MAX_PIT = 2; // Widest pit, in columns
+    public static final int MAX_STEP = 2; // Highest block, in tiles
+    private static final int START = 2 * SEGMENT; // Columns at the start left without enemies or stars
+    private static final int ROWS = (int) (World.HEIGHT / World.TILE_SIZE); // Rows of the level
+    private static final int GROUND = ROWS - 1; // Row of the ground
+    private static final int HEADROOM = 4; // Rows kept free over the ground around pits and blocks
+
+    // What a segment holds
+    private static final int FLAT = 0, PIT = 1, BLOCK = 2, PLATFORM = 3;
+
+    private final int columns; // Width of the level
+    private final int enemies; // Enemies spread over the level
+    private final int stars; // Stars spread over the level
+    private final long seed; // Picks the segments and the rows of the enemies and stars
+
+    /**
+     * Constructs a generated level.
+     *
+     * @param columns the width of the level, at least 2 * SEGMENT
+     * @param enemies the number of enemies; a column holds as many as fit above the ground
+     * @param stars   the number of stars, at most one per column
+     * @param seed    the seed the level is made from
+     */
+    public LevelGenerator(int columns, int enemies, int stars, long seed) {
+        if (columns < START) {
+            throw new IllegalArgumentException("A level needs at least " + START + " columns, not " + columns);
+        }
+        if (enemies < 0) {
+            throw new IllegalArgumentException("The number of enemies cannot be negative: " + enemies);
+        }
+        if (stars < 0) {
+            throw new IllegalArgumentException("The number of stars cannot be negative: " + stars);
+        }
+        this.columns = columns;
+        this.enemies = enemies;
+        this.stars = Math.min(stars, columns - START);
+        this.seed = seed;
+    }//end constructor
+
+    /**
+     * Makes a level from its description in a list of level files.
+     *
+     * @param spec generated:columns[:enemies[:stars[:seed]]]; the enemies
+     *             default to one per 20 columns, the stars to one per 50
+     *             columns and the seed to 1
+     * @return the level
+     * @throws IllegalArgumentException if the description cannot be read
+     */
+    public static LevelGenerator parse(String spec) {
+        String[] parts = spec.substring(PREFIX.length()).split(":");
+        try {
+            int columns = Integer.parseInt(parts[0]);
+            int enemies = parts.length > 1 ? Integer.parseInt(parts[1]) : columns / 20;
+            int stars = parts.length > 2 ? Integer.parseInt(parts[2]) : columns / 50;
+            long seed = parts.length > 3 ? Long.parseLong(parts[3]) : 1;
+            return new LevelGenerator(columns, enemies, stars, seed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a generated level: " + spec, e);
+        }
+    }//end parse
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }//end getColumns
+
+    @Override
+    public int getRows() {
+        return ROWS;
+    }//end getRows
+
+    @Override
+    public char getTile(int column, int row) {
+        int shape = shape(column / SEGMENT);
+        int offset = column % SEGMENT;
+        char terrain = terrain(shape, offset, row);
+        if (terrain != '0') {
+            return terrain;
+        }
+        int surface = surface(shape, offset);
+        int star = starRow(column, surface);
+        if (row == star) {
+            return '4';
+        }
+        return isEnemy(column, row, shape, offset, surface, star) ? '2' : '0';
+    }//end getTile
+
+    /**
+     * Mixes the numbers the level is made from, without generating it.
+     */
+    @Override
+    public long fingerprint() {
+        return mix(mix(mix(mix(seed) ^ columns) ^ enemies) ^ stars);
+    }//end fingerprint
+
+    /**
+     * Picks what a segment holds, packed in an int: the kind in the lowest
+     * bits, then a start column, a width and a height or row.
+     */
+    private int shape(int segment) {
+        int last = (columns - 1) / SEGMENT;
+        if (segment < START / SEGMENT || segment >= last - 1) {
+            return FLAT;
+        }
+        long hash = mix(seed ^ (segment * 0x9E3779B97F4A7C15L));
+        int kind = (int) (hash & 3);
+        int start, width, size;
+        switch (kind) {
+            case PIT:
+                start = 2 + (int) ((hash >>> 8) % 3);
+                width = 1 + (int) ((hash >>> 16) % MAX_PIT);
+                size = 0;
+                break;
+            case BLOCK:
+                start = 2 + (int) ((hash >>> 8) % 3);
+                width = 1 + (int) ((hash >>> 16) % 3);
+                size = 1 + (int) ((hash >>> 24) % MAX_STEP);
+                break;
+            case PLATFORM:
+                start = 1 + (int) ((hash >>> 8) % 3);
+                width = 2 + (int) ((hash >>> 16) % 4);
+                size = 2 + (int) ((hash >>> 24) % (GROUND - HEADROOM - 2)); // Row of the platform
+                break;
+            default:
+                return FLAT;
+        }
+        return kind | start << 2 | width << 6 | size << 10;
+    }//end shape
+
+    /**
+     * Gets the platform or lava tile of a segment, or '0'.
+     */
+    private static char terrain(int shape, int offset, int row) {
+        int kind = shape & 3;
+        int start = (shape >>> 2) & 15, width = (shape >>> 6) & 15, size = shape >>> 10;
+        boolean inside = offset >= start && offset < start + width;
+        if (row == GROUND) {
+            return kind == PIT && inside ? '3' : '1';
+        }
+        if (kind == BLOCK && inside && row >= GROUND - size) {
+            return '1';
+        }
+        if (kind == PLATFORM && inside && row == size) {
+            return '1';
+        }
+        return '0';
+    }//end terrain
+
+    /**
+     * Gets the highest row of the ground or block a column stands on.
+     */
+    private static int surface(int shape, int offset) {
+        int start = (shape >>> 2) & 15, width = (shape >>> 6) & 15;
+        if ((shape & 3) == BLOCK && offset >= start && offset < start + width) {
+            return GROUND - (shape >>> 10);
+        }
+        return GROUND;
+    }//end surface
+
+    /**
+     * Gets the row of the star of a column, one or two rows above its
+     * surface, or -1 if the column has no star.
+     */
+    private int starRow(int column, int surface) {
+        if (share(column, stars, columns - START) == 0) {
+            return -1;
+        }
+        return surface - 1 - (int) (mix(seed + column) >>> 63);
+    }//end starRow
+
+    /**
+     * Checks whether a free tile above the surface of a column holds an
+     * enemy. The enemies of a column take consecutive free rows, from a row
+     * picked by the seed.
+     */
+    private boolean isEnemy(int column, int row, int shape, int offset, int surface, int star) {
+        int count = share(column, enemies, columns - START);
+        if (count == 0 || row >= surface) {
+            return false;
+        }
+        int free = 0, rank = -1;
+        for (int r = 0; r < surface; r++) {
+            if (r != star && terrain(shape, offset, r) == '0') {
+                if (r == row) {
+                    rank = free;
+                }
+                free++;
+            }
+        }
+        int first = (int) ((mix(seed - column) >>> 1) % free);
+        return Math.floorMod(rank - first, free) < count;
+    }//end isEnemy
+
+    /**
+     * Spreads a number of objects evenly over the columns after START.
+     *
+     * @return the number of objects of a column
+     */
+    private static int share(int column, int objects, int spread) {
+        if (column < START) {
+            return 0;
+        }
+        long index = column - START;
+        return (int) ((index + 1) * objects / spread - index * objects / spread);
+    }//end share
+
+    /**
+     * Scrambles the bits of a long (the finalizer of SplitMix64, see GameRandom).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }//end mix
+
+    /**
+     * Looks for a place of a level the stickman may not get past. The check
+     * is cautious: a level that passes can be run through from left to right,
+     * but a level that fails may still be. It asks that every pit in the
+     * ground is at most MAX_PIT columns wide, that every block on the ground
+     * is at most MAX_STEP tiles high with two free rows above it, and that
+     * nothing hangs lower than HEADROOM rows over the ground next to a pit
+     * or a block.
+     *
+     * @param level the level to check, with the height of the screen
+     * @return the first column that breaks a rule, or -1 if there is none
+     */
+    public static int findObstacle(LevelSource level) {
+        int rows = level.getRows();
+        int ground = rows - 1;
+        int pit = 0; // Columns of the pit being crossed
+        for (int column = 0; column < level.getColumns(); column++) {
+            pit = level.getTile(column, ground) == '1' ? 0 : pit + 1;
+            if (pit > MAX_PIT) {
+                return column;
+            }
+            int surface = ground;
+            while (surface > 0 && level.getTile(column, surface - 1) == '1') {
+                surface--;
+            }
+            if (ground - surface > MAX_STEP) {
+                return column;
+            }
+            for (int row = Math.max(0, surface - 2); row < surface; row++) {
+                if (level.getTile(column, row) == '1') {
+                    return column;
+                }
+            }
+        }
+        // Room to jump: nothing hangs low within two columns of a pit or a block
+        for (int column = 0; column < level.getColumns(); column++) {
+            if (!nearObstacle(level, column)) {
+                continue;
+            }
+            int surface = ground;
+            while (surface > 0 && level.getTile(column, surface - 1) == '1') {
+                surface--;
+            }
+            for (int row = Math.max(0, ground - HEADROOM); row < surface; row++) {
+                if (level.getTile(column, row) == '1') {
+                    return column;
+                }
+            }
+        }
+        return -1;
+    }//end findObstacle
+
+    /**
+     * Checks whether a column is within two columns of a pit or a block.
+     */
+    private static boolean nearObstacle(LevelSource level, int column) {
+        int ground = level.getRows() - 1;
+        for (int c = Math.max(0, column - 2); c <= Math.min(level.getColumns() - 1, column + 2); c++) {
+            if (level.getTile(c, ground) != '1' || level.getTile(c, ground - 1) == '1') {
+                return true;
+            }
+        }
+        return false;
+    }//end nearObstacle
+
+    /**
+     * Makes a level, counts its tiles, checks it can be run through and
+     * optionally writes it as a BinaryLevel.
+     *
+     * @param args the columns, the enemies, the stars, the seed and the output file
+     * @throws IOException if the level cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java LevelGenerator columns [enemies] [stars] [seed] [output.lvl]");
+            System.exit(1);
+        }
+        int columns = Integer.parseInt(args[0]);
+        int enemies = args.length > 1 ? Integer.parseInt(args[1]) : columns / 20;
+        int stars = args.length > 2 ? Integer.parseInt(args[2]) : columns / 50;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        LevelGenerator level = new LevelGenerator(columns, enemies, stars, seed);
+
+        long start = System.nanoTime();
+        long[] counts = new long[5];
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < ROWS; row++) {
+                counts[level.getTile(column, row) - '0']++;
+            }
+        }
+        long counted = System.nanoTime();
+        int obstacle = findObstacle(level);
+        long checked = System.nanoTime();
+        System.out.printf("%d x %d tiles: %d platforms, %d lava, %d enemies, %d stars, read in %.1f ms%n",
+                columns, ROWS, counts[1], counts[3], counts[2], counts[4], (counted - start) * 1e-6);
+        System.out.printf("%s in %.1f ms%n", obstacle < 0 ? "traversable" : "obstacle at column " + obstacle,
+                (checked - counted) * 1e-6);
+        if (args.length > 4) {
+            Path output = Path.of(args[4]);
+            BinaryLevel.write(level, output);
+            System.out.printf("written to %s in %.1f ms%n", output, (System.nanoTime() - checked) * 1e-6);
+        }
+    }//end main
+
+}//end class
@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the levels of a game, one after the other.
+ *
+ * While a level is played, the next one is opened and its first chunks are
+ * built on a virtual thread, started by the game some distance before the end
+ * of the level (see Game.PREPARE_COLUMNS). The result is a Prepared level that never changes
+ * once built, so the game can take it and swap it in between two updates: the
+ * only work left on the simulation thread is installing the chunks around the
+ * camera, which depends on the size of the screen and not on the size of the
+ * level. If the next level is not ready when the game needs it, the
+ * simulation thread waits for it (counted in getWaits), or builds it itself
+ * if it was never asked for (counted in getBuilds).
+ */
+public class LevelLoader {
+
+    // Prepares the next levels, one virtual thread per level
+    private static final ExecutorService LOADER = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Opens one level of the sequence.
+     */
+    public interface Source {
+
+        /**
+         * Opens the level. May be called on a background thread.
+         *
+         * @return the level
+         * @throws IOException if the level cannot be read
+         */
+        LevelSource open() throws IOException;
+    }//end interface
+
+    /**
+     * A level ready to be played: its layout and the chunks seen when the
+     * camera is at the start of the level.
+     */
+    public static class Prepared {
+
+        private final int index; // Position of the level in the sequence
+        private final LevelSource level; // Layout of the level
+        private final ArrayList<LevelChunk> chunks; // Chunks at the start of the level, from left to right
+
+        Prepared(int index, LevelSource level, ArrayList<LevelChunk> chunks) {
+            this.index = index;
+            this.level = level;
+            this.chunks = chunks;
+        }//end constructor
+
+        // Getters
+        public int getIndex() {
+            return index;
+        }//end getIndex
+
+        public LevelSource getLevel() {
+            return level;
+        }//end getLevel
+
+        public ArrayList<LevelChunk> getChunks() {
+            return chunks;
+        }//end getChunks
+
+    }//end class
+
+    private final Source[] sequence; // The levels, in the order they are played
+    private final int chunkColumns; // Number of columns of a chunk
+    private final int startChunks; // Chunks built ahead at the start of each level
+    private Future<Prepared> next; // The level being prepared, or null
+    private int nextIndex = -1; // Position of the level being prepared
+    private Long fingerprint; // Fingerprint of the sequence, null until first asked for
+    private long waits; // Levels taken before they were ready, so the caller waited for them
+    private long builds; // Levels taken without being prepared, so the caller built them
+
+    /**
+     * Constructs a loader for a sequence of levels.
+     *
+     * @param sequence     the levels, in the order they are played
+     * @param chunkColumns the number of columns of a chunk
+     * @param startChunks  the number of chunks built ahead at the start of each level
+     */
+    public LevelLoader(Source[] sequence, int chunkColumns, int startChunks) {
+        if (sequence.length == 0) {
+            throw new IllegalArgumentException("A game needs at least one level");
+        }
+        this.sequence = sequence;
+        this.chunkColumns = chunkColumns;
+        this.startChunks = startChunks;
+    }//end constructor
+
+    /**
+     * Starts preparing a level on a virtual thread. Nothing is done if the
+     * sequence has no such level or the level is already being prepared.
+     *
+     * @param index the position of the level in the sequence
+     */
+    public void prepare(int index) {
+        if (index == nextIndex || index >= sequence.length) {
+            return;
+        }
+        if (next != null) {
+            next.cancel(false);
+        }
+        nextIndex = index;
+        next = LOADER.submit(() -> build(index));
+    }//end prepare
+
+    /**
+     * Gets a prepared level. If it is not ready yet, waits for it; if it was
+     * never asked for, prepares it on the calling thread and leaves the level
+     * being prepared, if any, as it is. The first level of a game and a level
+     * loaded from a save are usually taken this way.
+     *
+     * @param index the position of the level in the sequence
+     * @return the level
+     * @throws UncheckedIOException if the level cannot be read
+     */
+    public Prepared take(int index) {
+        if (index != nextIndex) {
+            builds++;
+            return build(index);
+        }
+        Future<Prepared> future = next;
+        next = null;
+        nextIndex = -1;
+        if (!future.isDone()) {
+            waits++;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return build(index);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new IllegalStateException("Could not prepare level " + index, e.getCause());
+        }
+    }//end take
+
+    /**
+     * Puts back a level that was taken but not played, so the next take of it
+     * does not build it again. Nothing is done if another level is being
+     * prepared in the meantime.
+     *
+     * @param prepared the level taken
+     */
+    public void giveBack(Prepared prepared) {
+        if (next == null) {
+            nextIndex = prepared.getIndex();
+            next = CompletableFuture.completedFuture(prepared);
+        }
+    }//end giveBack
+
+    /**
+     * Opens a level and builds its first chunks.
+     */
+    private Prepared build(int index) {
+        LevelSource level;
+        try {
+            level = sequence[index].open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load level " + index, e);
+        }
+        int count = Math.min(startChunks, (level.getColumns() + chunkColumns - 1) / chunkColumns);
+        ArrayList<LevelChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new LevelChunk(level, i, chunkColumns));
+        }
+        return new Prepared(index, level, chunks);
+    }//end build
+
+    /**
+     * Computes a number that tells this sequence of levels apart from other
+     * sequences (see LevelSource.fingerprint). Every level is opened the first
+     * time; the result is kept for the next calls.
+     *
+     * @return the fingerprint of the sequence
+     * @throws UncheckedIOException if a level cannot be read
+     */
+    public long fingerprint() {
+        if (fingerprint == null) {
+            long hash = sequence.length;
+            for (int i = 0; i < sequence.length; i++) {
+                try {
+                    hash = 31 * hash + sequence[i].open().fingerprint();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not load level " + i, e);
+                }
+            }
+            fingerprint = hash;
+        }
+        return fingerprint;
+    }//end fingerprint
+
+    /**
+     * Checks whether a level has been prepared in the background.
+     *
+     * @param index the position of the level in the sequence
+     * @return true if the level can be taken without waiting
+     */
+    public boolean isReady(int index) {
+        return index == nextIndex && next.isDone();
+    }//end isReady
+
+    // Getters
+    public int size() {
+        return sequence.length;
+    }//end size
+
+    public long getWaits() {
+        return waits;
+    }//end getWaits
+
+    public long getBuilds() {
+        return builds;
+    }//end getBuilds
+
+}//end class
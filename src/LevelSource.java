@@ -0,0 +1,55 @@
+/**
+ * A source of level layout data.
+ *
+ * A level is a grid of tiles using the legend of Levels.LEVEL_1: '0' for
+ * empty space, '1' for a platform, '2' for an enemy, '3' for lava and '4' for a
+ * star. Implementations only have to answer single tile lookups, so a level
+ * does not have to be held in memory as a whole.
+ *
+ * Implementations must allow lookups from several threads at once, since
+ * chunks of the level are built in the background.
+ */
+public interface LevelSource {
+
+    /**
+     * Gets the number of columns of the level.
+     *
+     * @return the width of the level in tiles
+     */
+    int getColumns();
+
+    /**
+     * Gets the number of rows of the level.
+     *
+     * @return the height of the level in tiles
+     */
+    int getRows();
+
+    /**
+     * Gets the tile at a given position.
+     *
+     * @param column the column of the tile, from 0 to getColumns() - 1
+     * @param row    the row of the tile, from 0 to getRows() - 1
+     * @return the legend character of the tile
+     */
+    char getTile(int column, int row);
+
+    /**
+     * Computes a number that tells this layout apart from other layouts, so a
+     * saved game is not loaded into a game playing other levels. This default
+     * reads every tile; implementations with a cheaper way to identify their
+     * layout override it.
+     *
+     * @return the fingerprint of the layout
+     */
+    default long fingerprint() {
+        long hash = 31L * getColumns() + getRows();
+        for (int column = 0; column < getColumns(); column++) {
+            for (int row = 0; row < getRows(); row++) {
+                hash = 31 * hash + getTile(column, row);
+            }
+        }
+        return hash;
+    }//end fingerprint
+
+}//end interface
@@ -30,4 +30,28 @@ public class Levels {
         "11111111111111111111111111111111111111113311111111111111111111111"
 
     };
+
+    /**
+     * Layout data for Level 2 of the game, in the same format as Level 1.
+     */
+    public static final String[] LEVEL_2 = new String[] {
+        "00000000000000000000000000000000000000000000000000000000000000000000000000000000",
+        "00000000000000000000000000000000000000000000000000000000000000000000000000000000",
+        "00000000000000000000000000000000000000000000000000004000000000000000000000000000",
+        "00000000000000000400000000000000000000000000000000011100000000000000000000000000",
+        "00000000000000001110000000000000000200000000000000000000000000000000000000000000",
+        "00000000000000000000000000000000011111000000000000000000000000040000000000000000",
+        "00000000004000000000000020000000000000000000000200000000000001110000000000000000",
+        "00000000011100000000001111100000000000000000011111000000000000000000002000000000",
+        "00000000000000000000000000000000000000000000000000000000000000000001111110000000",
+        "00000200000000000100000000000000002000000000000000000000000000000000000000000000",
+        "00000000000000000100000000000001000000000000400000000002000004000000000000000000",
+        "11111111111111111111113311111111111111111111111111133311111111111111111111111111"
+    };
+
+    /**
+     * The levels of a game, in the order they are played. Reaching the right
+     * edge of a level moves on to the next one.
+     */
+    public static final String[][] SEQUENCE = {LEVEL_1, LEVEL_2};
 }//end class
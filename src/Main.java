@@ -1,4 +1,7 @@
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -7,12 +10,12 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 
@@ -24,12 +27,32 @@ import javafx.stage.Stage;
 public class Main extends Application {
     
     //Constants for window dimensions and tile size
-    public static final double WIDTH = 1280, HEIGHT = 720, TILE_SIZE = 60; 
+    public static final double WIDTH = World.WIDTH, HEIGHT = World.HEIGHT, TILE_SIZE = World.TILE_SIZE; 
+
+    //Simulation steps per second and the most steps run to catch up in one frame
+    public static final int TICK_RATE = Integer.getInteger("stickman.tickRate", 120);
+    public static final int MAX_STEPS_PER_FRAME = Integer.getInteger("stickman.maxSteps", 8);
+
+    //Runs the simulation on its own thread instead of the JavaFX thread (see SimulationThread)
+    public static final boolean SIMULATION_THREAD = Boolean.getBoolean("stickman.simulationThread");
+
+    //File every game is recorded to (see Replay), or null to not record
+    public static final String RECORD_PATH = System.getProperty("stickman.record");
+
+    //Server to play on, as host:port (see GameServer), or null to play alone
+    public static final String CONNECT = System.getProperty("stickman.connect");
+
+    //File the game is saved to with F5, at every new level and when leaving it, and loaded from with F9
+    public static final String SAVE_PATH = System.getProperty("stickman.save", "stickman.sav");
     
     private Stage stage;         //Primary stage of the application
     private double deltaTime;    //Time elapsed between frames for AnimationTimer
-    Game game = new Game();      //Instance of the Game class   
+    Game game;                   //Instance of the Game class, created when Play is pressed
+    NetClient client;            //Connection to the server when playing on one, otherwise null
+    GameRenderer renderer = new GameRenderer(); //Draws the game on the canvas
+    SaveGame saveGame = new SaveGame(); //Saves and loads the game, kept to reuse its buffer
     private double time;         //Timer for transitioning back to the home scene
+    private String sceneName;    //Name of the scene shown, for the GameEvents.SceneTransition events
 
     
      /**
@@ -51,16 +74,19 @@ public class Main extends Application {
 
     @Override
     public void start(Stage primaryStage) throws FileNotFoundException{
+        // Decode all the images in the background while the home scene is shown
+        AssetCache.loadAsync();
+
         // Set the home scene initially
         this.stage = primaryStage;
         Scene scene = sceneIntro();  
-        primaryStage.setScene(scene);
+        showScene(scene, "intro");
         
         // Window title
         primaryStage.setTitle("Final Project");  
         
         // Set application icon
-        Image icon = new Image("stickman.png");  
+        Image icon = AssetCache.getImage("stickman.png");  
         primaryStage.getIcons().add(icon);
         
         // Prevent window resizing
@@ -84,19 +110,25 @@ public class Main extends Application {
        Scene scene = new Scene(root, WIDTH, HEIGHT, Color.BEIGE);
 
        // Background image for the home scene
-       var img = new Image("imageMain.png");   
+       var img = AssetCache.getImage("imageMain.png");   
        BackgroundImage backgroundImage = new BackgroundImage(img, null, null, null, null);  
 
        // Title text for the home screen
        var title = new Text("STICKMAN ESCAPE");
-       title.setFont(new Font(50));
+       title.setFont(AssetCache.getFont(50));
 
        // Buttons layout
        var buttons = new VBox();
        buttons.setAlignment(Pos.BASELINE_CENTER);
        buttons.setSpacing(5);
        var btnPlay = new Button("Play!");
-       buttons.getChildren().add(btnPlay);
+
+       // The game can only start once its images are loaded; the bar shows how far the loading is
+       var loading = new ProgressBar();
+       loading.progressProperty().bind(AssetCache.progressProperty());
+       loading.visibleProperty().bind(AssetCache.readyProperty().not());
+       btnPlay.disableProperty().bind(AssetCache.readyProperty().not());
+       buttons.getChildren().addAll(btnPlay, loading);
 
        // Add elements to the root container
        root.getChildren().addAll(title, buttons);
@@ -106,8 +138,9 @@ public class Main extends Application {
 
         // Action handler for the Play button to start the game
         btnPlay.setOnAction((e) -> {
-            game = new Game();  // Reset game
-            stage.setScene(sceneGame());  // Switch to the game scene
+            client = connect();  // Join the server, if there is one
+            game = client == null ? new Game() : null;  // Reset game, unless the server runs it
+            showScene(sceneGame(), "game");  // Switch to the game scene
         });
 
         // Handle ESCAPE key press to close the game
@@ -128,7 +161,7 @@ public class Main extends Application {
         //Scene
         var root = new Pane();
         var scene = new Scene(root, WIDTH, HEIGHT);        
-        var canvas = new Canvas( game.getLevelWidth(), HEIGHT);
+        var canvas = new Canvas(WIDTH, HEIGHT); // Only the visible part of the level
         
         var lives = new VBox();
         lives.setAlignment(Pos.TOP_CENTER);
@@ -140,29 +173,75 @@ public class Main extends Application {
 
         //animation timer and canvas
         var context = canvas.getGraphicsContext2D();
+        var loop = new GameLoop(TICK_RATE, MAX_STEPS_PER_FRAME);
+        if (RECORD_PATH != null && game != null) {
+            loop.setRecording(new Recording(System.getProperty("stickman.level", ""), loop.getStep(), game.getSeed()));
+        }
+        if (game != null) {
+            loop.setSaveGame(saveGame, Path.of(SAVE_PATH));
+        }
+        var snapshots = new SnapshotBuffer();
+        var simulation = SIMULATION_THREAD && game != null ? new SimulationThread(game, loop, snapshots) : null;
+        var frameSnapshot = new RenderSnapshot(); // State drawn when the game is updated on this thread or a server
         var timer = new AnimationTimer() {
             long lastTime = System.nanoTime();
+            long lastTick; // Updates run before the last frame
             
             @Override
             public void handle(long now) {
+                long callbackStart = FrameProfiler.start();
+                FrameProfiler.record(FrameProfiler.FRAME, now - lastTime);
+                // An event cannot be reused once committed, so one is only created while a recording runs
+                GameEvents.Frame event = GameEvents.isRecording() ? new GameEvents.Frame() : null;
+                if (event != null) {
+                    event.begin();
+                }
                 
                 deltaTime = (now - lastTime) * 1e-9;
                 
-                // Updates the game logic
-                game.update(deltaTime);
+                // Updates the game logic in fixed steps, or takes the last state of the simulation thread or the server
+                RenderSnapshot snapshot;
+                double alpha;
+                if (client != null) {
+                    Input.drain(now); // The keys go to the server instead of a local game
+                    try {
+                        client.poll(Input.getPressed(), System.nanoTime());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    if (!client.fill(frameSnapshot)) {
+                        lastTime = now;
+                        return; // Nothing to draw until the first state arrives
+                    }
+                    snapshot = frameSnapshot;
+                    alpha = snapshot.getAlpha(System.nanoTime());
+                } else if (simulation != null) {
+                    snapshot = snapshots.acquire();
+                    alpha = snapshot.getAlpha(System.nanoTime());
+                } else {
+                    long start = FrameProfiler.start();
+                    loop.advance(game, deltaTime);
+                    FrameProfiler.stop(FrameProfiler.SIMULATION, start);
+                    start = FrameProfiler.start();
+                    frameSnapshot.capture(game, loop.getTicks(), now, loop.getStep());
+                    FrameProfiler.stop(FrameProfiler.SNAPSHOT, start);
+                    snapshot = frameSnapshot;
+                    alpha = loop.getAlpha();
+                }
 
-                // Clears and redraws the canvas
-                context.setFill(Color.LIGHTGREY);
-                context.fillRect(0, 0, WIDTH, HEIGHT);
-                game.draw(context);
+                // Redraws the canvas, or only the parts that changed (see GameRenderer.DIRTY_RECTANGLES)
+                long start = FrameProfiler.start();
+                renderer.draw(context, snapshot, alpha);
+                FrameProfiler.stop(FrameProfiler.RENDER, start);
 
                 // Transitions back to the home scene if the game is finished
-                if (game.isFinished()) {
+                if (snapshot.isFinished()) {
                     time += deltaTime;
                     if (time >= 3) {
                         stop();
+                        stopGame(simulation, loop);
                         try {
-                            stage.setScene(sceneIntro());
+                            showScene(sceneIntro(), "intro");
                             //Stops the handle
                         } catch (FileNotFoundException e) {
                             e.printStackTrace();
@@ -170,10 +249,25 @@ public class Main extends Application {
                         time = 0;
                     }
                 }                
+                if (event != null && event.shouldCommit()) {
+                    event.deltaTime = now - lastTime;
+                    event.steps = (int) (snapshot.getTick() - lastTick);
+                    event.enemies = snapshot.getEnemyCount();
+                    event.stars = snapshot.getStarCount();
+                    event.drawn = renderer.getDrawnCount();
+                    event.xLvlOffset = snapshot.getXLvlOffset();
+                    event.commit();
+                }
+                lastTick = snapshot.getTick();
                 lastTime = now;
+                FrameProfiler.stop(FrameProfiler.CALLBACK, callbackStart);
+                FrameProfiler.endFrame(System.nanoTime());
             }
         };
         
+        if (simulation != null) {
+            simulation.start();
+        }
         timer.start();
 
         // Handle key press events
@@ -182,19 +276,135 @@ public class Main extends Application {
             // Stop timer if ESCAPE is pressed
             if (returnIntro(e)) {
                 timer.stop();
+                stopGame(simulation, loop);
+            } else if (e.getCode() == KeyCode.F3) {
+                FrameProfiler.setEnabled(!FrameProfiler.isEnabled()); // Show or hide the profiler overlay
+            } else if (e.getCode() == KeyCode.F5) {
+                loop.requestSave(); // Quick-save, done by the thread running the game
+            } else if (e.getCode() == KeyCode.F9) {
+                loop.requestLoad(); // Quick-load
             } else {
-                Input.setKeyPressed(e.getCode(), true);  // Register key press for gameplay
+                Key key = toKey(e.getCode());
+                if (key != null) {
+                    Input.post(key, true, System.nanoTime());  // Register key press for gameplay
+                }
             }
         });
 
         // Handles key release events
         scene.setOnKeyReleased(event -> {
-            Input.setKeyPressed(event.getCode(), false); //Register key release
+            Key key = toKey(event.getCode());
+            if (key != null) {
+                Input.post(key, false, System.nanoTime()); //Register key release
+            }
         });
 
         return scene;
     }//end sceneGame
 
+    /**
+     * Shows a scene in the window and records the change as a
+     * GameEvents.SceneTransition event.
+     * 
+     * @param scene the scene to show
+     * @param name  the name of the scene, "intro" or "game"
+     */
+    private void showScene(Scene scene, String name) {
+        GameEvents.SceneTransition event = new GameEvents.SceneTransition();
+        event.begin();
+        stage.setScene(scene);
+        if (event.shouldCommit()) {
+            event.from = sceneName;
+            event.to = name;
+            event.commit();
+        }
+        sceneName = name;
+    }//end showScene
+
+    /**
+     * Ends the game: stops the simulation thread, if any, saves the game if it
+     * is not over, then saves the recording. When playing on a server, leaves it.
+     *
+     * @param simulation the thread running the game, or null if it runs on the JavaFX thread
+     * @param loop       the loop that was running the game
+     */
+    private void stopGame(SimulationThread simulation, GameLoop loop) {
+        if (simulation != null) {
+            simulation.stop(); // The game and the loop are only safe to read once it returns
+        }
+        if (loop.getSaveGame() != null && !game.isFinished()) {
+            loop.save(game); // Left with ESCAPE: F9 in the next game goes on from here
+        }
+        saveRecording(loop);
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            client = null;
+        }
+    }//end stopGame
+
+    /**
+     * Connects to the server named by CONNECT.
+     *
+     * @return the client, or null to play alone because there is no server
+     *         or its address cannot be used
+     */
+    private NetClient connect() {
+        if (CONNECT == null) {
+            return null;
+        }
+        int colon = CONNECT.lastIndexOf(':');
+        String host = colon < 0 ? CONNECT : CONNECT.substring(0, colon);
+        int port = colon < 0 ? GameServer.PORT : Integer.parseInt(CONNECT.substring(colon + 1));
+        try {
+            return new NetClient(new InetSocketAddress(host, port), Game.sequenceOf(System.getProperty("stickman.level", "")));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }//end connect
+
+    /**
+     * Stops recording the game and writes the recording to RECORD_PATH.
+     * 
+     * @param loop the loop that was recording the game
+     */
+    private void saveRecording(GameLoop loop) {
+        Recording recording = loop.getRecording();
+        if (recording == null) {
+            return;
+        }
+        loop.setRecording(null);
+        recording.finish(game);
+        try {
+            recording.write(Path.of(RECORD_PATH));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }//end saveRecording
+
+    /**
+     * Translates a JavaFX key code into a key of the game.
+     * 
+     * @param code the key code of a key event
+     * @return the matching game key, or null if the game ignores the key
+     */
+    private static Key toKey(KeyCode code) {
+        switch (code) {
+            case LEFT:
+                return Key.LEFT;
+            case RIGHT:
+                return Key.RIGHT;
+            case UP:
+                return Key.UP;
+            default:
+                return null;
+        }
+    }//end toKey
+
     /**
      * Returns to the home scene when the ESCAPE key is pressed.
      * 
@@ -205,7 +415,7 @@ public class Main extends Application {
         boolean returnIntroNeeded;
         if (event.getCode() == KeyCode.ESCAPE) {
             try {
-                stage.setScene(sceneIntro()); // Switch to home screen
+                showScene(sceneIntro(), "intro"); // Switch to home screen
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
             }
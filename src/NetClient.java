@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+
+/**
+ * Plays a game run by a GameServer.
+ *
+ * The client sends the keys it holds to the server once per poll, along with
+ * the last tick it received, and reads every state the server sent back. A
+ * state comes as a delta against a state the client acknowledged, which it
+ * keeps in a history of the last HISTORY states. The two latest states are
+ * turned into a RenderSnapshot, so the game is drawn by the usual
+ * GameRenderer, in between the two states.
+ *
+ * The client reads the levels itself, from the same sequence as the server,
+ * and streams the chunks around the camera with a ChunkStreamer, as the game
+ * does, so only those chunks are kept in memory.
+ *
+ * The client counts the bytes and datagrams it sends and receives, the time
+ * from sending keys to receiving the first state that used them, and the
+ * same time less what the keys waited on the server for the next tick (what
+ * is left is the network and the wait for the next poll of the client).
+ *
+ * Usage, for headless stand-in players: java NetClient [host] [port] [clients] [seconds]
+ */
+public class NetClient {
+
+    // The chunks of the client only take part in drawing, so nothing is told about them
+    private static final ChunkStreamer.Listener DRAW_ONLY = new ChunkStreamer.Listener() {
+        @Override
+        public void chunkInstalled(LevelChunk chunk) {
+        }//end chunkInstalled
+
+        @Override
+        public void chunkEvicted(LevelChunk chunk) {
+        }//end chunkEvicted
+    };
+
+    private final DatagramChannel channel; // The socket of the client, connected to the server
+    private final ByteBuffer in = ByteBuffer.allocateDirect(GameServer.MAX_PACKET); // Reused for received datagrams
+    private final ByteBuffer out = ByteBuffer.allocateDirect(21); // Reused for sent datagrams
+    private final NetState[] history = new NetState[GameServer.HISTORY]; // Received states, by tick modulo HISTORY
+    private final LevelLoader.Source[] sequence; // The levels, in the order they are played
+    private NetState latest, previous; // The last two states received, null before the first ones
+    private long latestTime; // Time the latest state was received
+    private long step; // Length of a tick on the server, in nanoseconds
+
+    private int levelIndex = -1; // Level the chunks belong to, -1 before the first state
+    private ChunkStreamer streamer; // Keeps the chunks of that level around the camera, null before the first state
+
+    // Counters
+    private long bytesIn, bytesOut; // Bytes received and sent
+    private long packetsIn, packetsOut; // Datagrams received and sent
+    private long deltas, fulls; // States received with and without a base
+    private long stale; // States dropped because they were older than the latest one or had no base
+    private long unreachable; // Polls that found no server
+    private LatencyHistogram inputLatency = new LatencyHistogram(); // Time from keys sent to a state using them
+    private LatencyHistogram roundTrip = new LatencyHistogram(); // The same, less the time the keys waited on the server
+
+    /**
+     * Constructs a client of a server. Nothing is sent until the first poll.
+     *
+     * @param server   the address of the server
+     * @param sequence the levels played by the server
+     * @throws IOException if the socket cannot be opened
+     */
+    public NetClient(InetSocketAddress server, LevelLoader.Source[] sequence) throws IOException {
+        this.sequence = sequence;
+        for (int i = 0; i < history.length; i++) {
+            history[i] = new NetState();
+        }
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server);
+    }//end constructor
+
+    /**
+     * Sends the keys held to the server and reads the states it sent.
+     *
+     * @param keys the keys held, one bit per Key
+     * @param now  the current time, from System.nanoTime()
+     * @return true if a new state was received
+     * @throws IOException if the socket fails
+     */
+    public boolean poll(long keys, long now) throws IOException {
+        out.clear();
+        out.put(GameServer.INPUT);
+        out.putInt(latest == null ? -1 : latest.getTick());
+        out.putLong(keys);
+        out.putLong(now);
+        out.flip();
+        try {
+            bytesOut += channel.write(out);
+            packetsOut++;
+        } catch (PortUnreachableException e) {
+            unreachable++;
+            return false;
+        }
+
+        boolean received = false;
+        while (true) {
+            in.clear();
+            int read;
+            try {
+                read = channel.read(in);
+            } catch (PortUnreachableException e) {
+                unreachable++;
+                return received;
+            }
+            if (read <= 0) {
+                return received;
+            }
+            in.flip();
+            bytesIn += read;
+            packetsIn++;
+            if (read < 21 || in.get() != GameServer.SNAPSHOT) {
+                continue; // Not a datagram of the game
+            }
+            long sent = in.getLong();
+            long held = in.getLong();
+            long tickLength = in.getInt() * 1000L;
+            received |= accept(sent, held, tickLength);
+        }
+    }//end poll
+
+    /**
+     * Applies the delta in the input buffer to the state it was written against.
+     *
+     * @return true if the state is newer than the latest one
+     */
+    private boolean accept(long sent, long held, long tickLength) {
+        int tick = NetState.peekTick(in);
+        int baseTick = NetState.peekBase(in);
+        NetState base = baseTick < 0 ? null : history[baseTick % history.length];
+        if ((latest != null && tick <= latest.getTick()) || (base != null && base.getTick() != baseTick)) {
+            stale++;
+            return false;
+        }
+        NetState state = history[tick % history.length];
+        state.readDelta(base, in);
+        if (base == null) {
+            fulls++;
+        } else {
+            deltas++;
+        }
+        long now = System.nanoTime();
+        if (sent != 0) {
+            inputLatency.record(now - sent);
+            roundTrip.record(now - sent - held);
+        }
+        previous = latest;
+        latest = state;
+        latestTime = now;
+        step = tickLength;
+        return true;
+    }//end accept
+
+    /**
+     * Fills a snapshot with the last two states received.
+     *
+     * @param snapshot the snapshot to fill
+     * @return false if no state was received yet, leaving the snapshot as it was
+     */
+    public boolean fill(RenderSnapshot snapshot) {
+        if (latest == null) {
+            return false;
+        }
+        NetState from = previous != null && previous.getLevelIndex() == latest.getLevelIndex() ? previous : latest;
+        snapshot.capture(from, latest, chunksAround(latest), Game.CHUNK_COLUMNS, latestTime, step * 1e-9);
+        return true;
+    }//end fill
+
+    /**
+     * Gets the chunks around the camera of a state, building the missing ones
+     * and dropping those the camera left.
+     */
+    private ArrayList<LevelChunk> chunksAround(NetState state) {
+        if (state.getLevelIndex() != levelIndex) {
+            if (streamer != null) {
+                streamer.clear();
+            }
+            levelIndex = state.getLevelIndex();
+            streamer = new ChunkStreamer(open(levelIndex), Game.CHUNK_COLUMNS, Game.CHUNK_MARGIN,
+                    Game.CHUNK_PREFETCH, DRAW_ONLY);
+        }
+        streamer.update(state.getXLvlOffset());
+        return streamer.getInstalled();
+    }//end chunksAround
+
+    /**
+     * Opens a level of the sequence.
+     */
+    private LevelSource open(int index) {
+        try {
+            return sequence[index].open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load level " + index, e);
+        }
+    }//end open
+
+    /**
+     * Closes the socket.
+     *
+     * @throws IOException if the socket cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
+    }//end close
+
+    /**
+     * Runs stand-in players against a server and prints their counters every
+     * second. The first player runs right and jumps once per second, the
+     * others only watch.
+     *
+     * @param args the host (default localhost), the port (default GameServer.PORT),
+     *             the number of players (default 1) and the number of seconds (default 10)
+     * @throws Exception if a socket fails or the thread is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.PORT;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        LevelLoader.Source[] sequence = Game.sequenceOf(System.getProperty("stickman.level", ""));
+
+        NetClient[] clients = new NetClient[players];
+        RenderSnapshot[] snapshots = new RenderSnapshot[players];
+        for (int i = 0; i < players; i++) {
+            clients[i] = new NetClient(new InetSocketAddress(host, port), sequence);
+            snapshots[i] = new RenderSnapshot();
+        }
+        long start = System.nanoTime();
+        long nextReport = start + 1_000_000_000L;
+        long frame = 1_000_000_000L / 60;
+        while (System.nanoTime() - start < seconds * 1_000_000_000L) {
+            long now = System.nanoTime();
+            long elapsed = (now - start) / frame;
+            long keys = 1L << Key.RIGHT.ordinal() | (elapsed % 60 < 2 ? 1L << Key.UP.ordinal() : 0);
+            for (int i = 0; i < players; i++) {
+                clients[i].poll(i == 0 ? keys : 0, now);
+                clients[i].fill(snapshots[i]);
+            }
+            if (now >= nextReport) {
+                NetClient client = clients[0];
+                System.out.printf("players=%d in=%d B out=%d B states=%d (%d full) stale=%d latency p50=%.2f ms p99=%.2f ms"
+                        + " rtt p50=%.3f ms score=%d lives=%d objects=%d%n", players, client.getBytesIn(),
+                        client.getBytesOut(), client.getDeltas() + client.getFulls(), client.getFulls(), client.getStale(),
+                        client.getInputLatency().getPercentile(50) * 1e-6, client.getInputLatency().getPercentile(99) * 1e-6,
+                        client.getRoundTrip().getPercentile(50) * 1e-6,
+                        snapshots[0].getScore(), snapshots[0].getNumLives(), snapshots[0].getCount());
+                nextReport += 1_000_000_000L;
+            }
+            Thread.sleep(frame / 1_000_000);
+        }
+        for (NetClient client : clients) {
+            client.close();
+        }
+    }//end main
+
+    // Getters for the counters
+    public long getBytesIn() {
+        return bytesIn;
+    }//end getBytesIn
+
+    public long getBytesOut() {
+        return bytesOut;
+    }//end getBytesOut
+
+    public long getPacketsIn() {
+        return packetsIn;
+    }//end getPacketsIn
+
+    public long getPacketsOut() {
+        return packetsOut;
+    }//end getPacketsOut
+
+    public long getDeltas() {
+        return deltas;
+    }//end getDeltas
+
+    public long getFulls() {
+        return fulls;
+    }//end getFulls
+
+    public long getStale() {
+        return stale;
+    }//end getStale
+
+    public long getUnreachable() {
+        return unreachable;
+    }//end getUnreachable
+
+    public LatencyHistogram getInputLatency() {
+        return inputLatency;
+    }//end getInputLatency
+
+    public LatencyHistogram getRoundTrip() {
+        return roundTrip;
+    }//end getRoundTrip
+
+}//end class
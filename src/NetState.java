@@ -0,0 +1,442 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * The state of a game as the GameServer sends it to its clients.
+ *
+ * A state holds the camera, the score, the lives, the level, and the position,
+ * size and sprite of every object near the camera. Each object has a network
+ * id that stays the same for as long as the object exists (the stickman is
+ * always 0), so two states can be compared object by object.
+ *
+ * A state is written to a packet as a delta against an older state the client
+ * acknowledged: only the values that changed, the objects that appeared and
+ * the objects that left are written. Against no state at all, the delta holds
+ * everything. The client applies the delta to its copy of the same older
+ * state and gets the new state back.
+ *
+ * States are reused from tick to tick: their arrays only grow when a larger
+ * id is seen.
+ */
+public class NetState {
+
+    // Values of an object written in a delta, combined with |
+    private static final int REMOVED = 1; // The object left the state
+    private static final int POSITION = 2; // x and y
+    private static final int SPRITE = 4; // The SpriteId
+    private static final int SIZE = 8; // Width and height
+
+    // Values of the game written in a delta, combined with |
+    private static final int SCORE = 1;
+    private static final int LIVES = 2;
+    private static final int END = 4; // finished and won
+    private static final int LEVEL = 8;
+    private static final int OFFSET = 16;
+
+    private int tick = -1; // Tick of the server the state was taken at, -1 for the empty state
+    private int score, numLives, levelIndex; // Score, lives and level of the player
+    private boolean finished, won; // State of the game
+    private float xLvlOffset; // Camera offset
+    private int count; // Number of objects in the state
+    private int[] ids = new int[64]; // Id of each object, the stickman first
+    private boolean[] present = new boolean[64]; // True for the ids of the objects in the state
+    private float[] x = new float[64], y = new float[64]; // Position of each object, by id
+    private float[] width = new float[64], height = new float[64]; // Size of each object, by id
+    private short[] sprite = new short[64]; // SpriteId of each object, by id
+
+    private ArrayList<GameObject> enemies = new ArrayList<>(); // Reused results of the enemy query
+    private ArrayList<Star> stars = new ArrayList<>(); // Reused results of the star query
+
+    /**
+     * Takes the state of a game: every object that may be visible around the
+     * camera.
+     *
+     * @param game   the game
+     * @param tick   the tick of the server
+     * @param netIds the network id of every object seen so far; new objects are added to it
+     */
+    public void capture(Game game, int tick, IdentityHashMap<GameObject, Integer> netIds) {
+        clear();
+        this.tick = tick;
+        score = game.getScore();
+        numLives = game.getNumLives();
+        levelIndex = game.getLevelIndex();
+        finished = game.isFinished();
+        won = game.isWon();
+        xLvlOffset = (float) game.getXLvlOffset();
+
+        // The objects seen by the camera between the last two updates, as in RenderSnapshot
+        double left = Math.min(game.getRenderXLvlOffset(0), game.getXLvlOffset());
+        double right = Math.max(game.getRenderXLvlOffset(0), game.getXLvlOffset()) + World.WIDTH;
+        add(game.getStickman(), netIds);
+        enemies.clear();
+        game.collectEnemies(left, right, enemies);
+        for (int i = 0; i < enemies.size(); i++) {
+            add(enemies.get(i), netIds);
+        }
+        stars.clear();
+        game.collectStars(left, right, stars);
+        for (int i = 0; i < stars.size(); i++) {
+            if (stars.get(i).isActive()) {
+                add(stars.get(i), netIds);
+            }
+        }
+    }//end capture
+
+    /**
+     * Adds an object, giving it the next network id if it has none.
+     */
+    private void add(GameObject object, IdentityHashMap<GameObject, Integer> netIds) {
+        Integer id = netIds.get(object);
+        if (id == null) {
+            id = netIds.size();
+            netIds.put(object, id);
+        }
+        put(id, (float) object.getLeft(), (float) object.getUp(), (float) object.getWidth(),
+                (float) object.getHeight(), (short) object.getSprite());
+    }//end add
+
+    /**
+     * Adds an object to the state or changes it.
+     */
+    private void put(int id, float x, float y, float width, float height, short sprite) {
+        if (id >= present.length) {
+            int length = Math.max(id + 1, present.length * 2);
+            present = Arrays.copyOf(present, length);
+            this.x = Arrays.copyOf(this.x, length);
+            this.y = Arrays.copyOf(this.y, length);
+            this.width = Arrays.copyOf(this.width, length);
+            this.height = Arrays.copyOf(this.height, length);
+            this.sprite = Arrays.copyOf(this.sprite, length);
+        }
+        if (!present[id]) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+            present[id] = true;
+        }
+        this.x[id] = x;
+        this.y[id] = y;
+        this.width[id] = width;
+        this.height[id] = height;
+        this.sprite[id] = sprite;
+    }//end put
+
+    /**
+     * Empties the state.
+     */
+    private void clear() {
+        for (int i = 0; i < count; i++) {
+            present[ids[i]] = false;
+        }
+        count = 0;
+        tick = -1;
+        score = numLives = levelIndex = 0;
+        finished = won = false;
+        xLvlOffset = 0;
+    }//end clear
+
+    /**
+     * Makes this state a copy of another one.
+     *
+     * @param other the state to copy, or null for the empty state
+     */
+    public void copy(NetState other) {
+        if (other == this) {
+            return;
+        }
+        clear();
+        if (other == null) {
+            return;
+        }
+        tick = other.tick;
+        score = other.score;
+        numLives = other.numLives;
+        levelIndex = other.levelIndex;
+        finished = other.finished;
+        won = other.won;
+        xLvlOffset = other.xLvlOffset;
+        for (int i = 0; i < other.count; i++) {
+            int id = other.ids[i];
+            put(id, other.x[id], other.y[id], other.width[id], other.height[id], other.sprite[id]);
+        }
+    }//end copy
+
+    /**
+     * Writes the difference between an older state and this one.
+     *
+     * @param base the state the client acknowledged, or null to write everything
+     * @param out  the buffer receiving the delta
+     * @throws java.nio.BufferOverflowException if the delta does not fit in the buffer
+     */
+    public void writeDelta(NetState base, ByteBuffer out) {
+        out.putInt(tick);
+        out.putInt(base == null ? -1 : base.tick);
+
+        int changed = base == null ? SCORE | LIVES | END | LEVEL | OFFSET : 0;
+        if (base != null) {
+            changed |= score != base.score ? SCORE : 0;
+            changed |= numLives != base.numLives ? LIVES : 0;
+            changed |= finished != base.finished || won != base.won ? END : 0;
+            changed |= levelIndex != base.levelIndex ? LEVEL : 0;
+            changed |= xLvlOffset != base.xLvlOffset ? OFFSET : 0;
+        }
+        out.put((byte) changed);
+        if ((changed & SCORE) != 0) {
+            out.putInt(score);
+        }
+        if ((changed & LIVES) != 0) {
+            out.put((byte) numLives);
+        }
+        if ((changed & END) != 0) {
+            out.put((byte) ((finished ? 1 : 0) | (won ? 2 : 0)));
+        }
+        if ((changed & LEVEL) != 0) {
+            out.put((byte) levelIndex);
+        }
+        if ((changed & OFFSET) != 0) {
+            out.putFloat(xLvlOffset);
+        }
+
+        // The objects that are new or changed, then the ones that left
+        int countAt = out.position();
+        out.putShort((short) 0);
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            int fields = POSITION | SPRITE | SIZE;
+            if (base != null && base.has(id)) {
+                fields = (x[id] != base.x[id] || y[id] != base.y[id] ? POSITION : 0)
+                        | (sprite[id] != base.sprite[id] ? SPRITE : 0)
+                        | (width[id] != base.width[id] || height[id] != base.height[id] ? SIZE : 0);
+            }
+            if (fields != 0) {
+                writeEntry(out, id, fields);
+                entries++;
+            }
+        }
+        if (base != null) {
+            for (int i = 0; i < base.count; i++) {
+                if (!has(base.ids[i])) {
+                    writeVarInt(out, base.ids[i]);
+                    out.put((byte) REMOVED);
+                    entries++;
+                }
+            }
+        }
+        out.putShort(countAt, (short) entries);
+    }//end writeDelta
+
+    /**
+     * Writes the changed values of one object.
+     */
+    private void writeEntry(ByteBuffer out, int id, int fields) {
+        writeVarInt(out, id);
+        out.put((byte) fields);
+        if ((fields & POSITION) != 0) {
+            out.putFloat(x[id]);
+            out.putFloat(y[id]);
+        }
+        if ((fields & SPRITE) != 0) {
+            out.putShort(sprite[id]);
+        }
+        if ((fields & SIZE) != 0) {
+            out.putFloat(width[id]);
+            out.putFloat(height[id]);
+        }
+    }//end writeEntry
+
+    /**
+     * Reads the tick of the base a delta was written against, without moving
+     * the buffer.
+     *
+     * @param in the buffer, at the start of the delta
+     * @return the tick of the base, or -1 if the delta holds everything
+     */
+    public static int peekBase(ByteBuffer in) {
+        return in.getInt(in.position() + 4);
+    }//end peekBase
+
+    /**
+     * Reads the tick a delta was taken at, without moving the buffer.
+     *
+     * @param in the buffer, at the start of the delta
+     * @return the tick of the state
+     */
+    public static int peekTick(ByteBuffer in) {
+        return in.getInt(in.position());
+    }//end peekTick
+
+    /**
+     * Becomes the state written by writeDelta.
+     *
+     * @param base the state the delta was written against (see peekBase), or null
+     * @param in   the buffer holding the delta
+     */
+    public void readDelta(NetState base, ByteBuffer in) {
+        copy(base);
+        tick = in.getInt();
+        in.getInt(); // The tick of the base
+        int changed = in.get();
+        if ((changed & SCORE) != 0) {
+            score = in.getInt();
+        }
+        if ((changed & LIVES) != 0) {
+            numLives = in.get();
+        }
+        if ((changed & END) != 0) {
+            int end = in.get();
+            finished = (end & 1) != 0;
+            won = (end & 2) != 0;
+        }
+        if ((changed & LEVEL) != 0) {
+            levelIndex = in.get();
+        }
+        if ((changed & OFFSET) != 0) {
+            xLvlOffset = in.getFloat();
+        }
+
+        int entries = in.getShort() & 0xFFFF;
+        for (int e = 0; e < entries; e++) {
+            int id = readVarInt(in);
+            int fields = in.get();
+            if ((fields & REMOVED) != 0) {
+                remove(id);
+                continue;
+            }
+            boolean known = has(id);
+            float newX = known ? x[id] : 0, newY = known ? y[id] : 0;
+            float newWidth = known ? width[id] : 0, newHeight = known ? height[id] : 0;
+            short newSprite = known ? sprite[id] : SpriteId.NONE;
+            if ((fields & POSITION) != 0) {
+                newX = in.getFloat();
+                newY = in.getFloat();
+            }
+            if ((fields & SPRITE) != 0) {
+                newSprite = in.getShort();
+            }
+            if ((fields & SIZE) != 0) {
+                newWidth = in.getFloat();
+                newHeight = in.getFloat();
+            }
+            put(id, newX, newY, newWidth, newHeight, newSprite);
+        }
+    }//end readDelta
+
+    /**
+     * Takes an object out of the state, keeping the others in their order.
+     */
+    private void remove(int id) {
+        if (!has(id)) {
+            return;
+        }
+        present[id] = false;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (ids[i] != id) {
+                ids[kept++] = ids[i];
+            }
+        }
+        count = kept;
+    }//end remove
+
+    /**
+     * Writes a non-negative number in as few bytes as it needs, 7 bits per byte.
+     */
+    private static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }//end writeVarInt
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }//end readVarInt
+
+    /**
+     * Checks whether an object is in the state.
+     *
+     * @param id the network id of the object
+     * @return true if the object is in the state
+     */
+    public boolean has(int id) {
+        return id < present.length && present[id];
+    }//end has
+
+    // Getters
+    public int getTick() {
+        return tick;
+    }//end getTick
+
+    public int getScore() {
+        return score;
+    }//end getScore
+
+    public int getNumLives() {
+        return numLives;
+    }//end getNumLives
+
+    public int getLevelIndex() {
+        return levelIndex;
+    }//end getLevelIndex
+
+    public boolean isFinished() {
+        return finished;
+    }//end isFinished
+
+    public boolean isWon() {
+        return won;
+    }//end isWon
+
+    public double getXLvlOffset() {
+        return xLvlOffset;
+    }//end getXLvlOffset
+
+    public int getCount() {
+        return count;
+    }//end getCount
+
+    /**
+     * Gets the network id of an object.
+     *
+     * @param i the index of the object, 0 for the stickman
+     * @return the network id
+     */
+    public int getId(int i) {
+        return ids[i];
+    }//end getId
+
+    // Values of an object, by network id
+    public double getX(int id) {
+        return x[id];
+    }//end getX
+
+    public double getY(int id) {
+        return y[id];
+    }//end getY
+
+    public double getWidth(int id) {
+        return width[id];
+    }//end getWidth
+
+    public double getHeight(int id) {
+        return height[id];
+    }//end getHeight
+
+    public int getSprite(int id) {
+        return sprite[id];
+    }//end getSprite
+
+}//end class
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+/**
+ * A pool of game objects created ahead of time and reused.
+ *
+ * The objects of a pool are created when the pool is built and taken out of
+ * their EntityStore until they are spawned. Spawning an object gives it a slot
+ * in its store again; despawning it hands the slot back and returns the object
+ * to the pool. Neither allocates, so waves of objects can appear and disappear
+ * in the middle of a game without work for the garbage collector.
+ *
+ * When every object is in use, the pool grows by a fixed number of objects, up
+ * to a maximum size. A pool with a growth of 0 never grows: spawning fails and
+ * returns null. The pool counts how often it grew and how often it was
+ * exhausted, so its sizes can be tuned.
+ *
+ * A pool is not thread-safe; it is only used by the simulation thread.
+ *
+ * @param <T> the type of game object in the pool
+ */
+public class ObjectPool<T extends GameObject> {
+
+    /**
+     * Creates the objects of a pool.
+     *
+     * @param <T> the type of game object created
+     */
+    public interface Factory<T> {
+
+        /**
+         * Creates an object. It is taken out of its store right away.
+         *
+         * @return the new object
+         */
+        T create();
+    }//end interface
+
+    private final String name; // Name of the pool, for the statistics
+    private final Factory<T> factory; // Creates the objects of the pool
+    private final int growth; // Objects added when the pool is empty, 0 to never grow
+    private final int maxSize; // Most objects the pool may create
+    private GameObject[] free; // Objects waiting to be spawned
+    private int freeCount; // Number of entries used in free
+    private int size; // Number of objects created by the pool
+    private int active; // Number of objects spawned and not yet despawned
+    private int peakActive; // Most objects spawned at the same time
+    private long spawns, despawns; // Number of calls of spawn and despawn
+    private long grows; // Number of times the pool grew
+    private long exhaustions; // Number of spawns that failed because the pool was full
+
+    /**
+     * Constructs a pool and creates its first objects.
+     *
+     * @param name        the name of the pool, for the statistics
+     * @param initialSize the number of objects created right away
+     * @param maxSize     the most objects the pool may create
+     * @param growth      the number of objects added when the pool is empty, 0 to never grow
+     * @param factory     creates the objects of the pool
+     */
+    public ObjectPool(String name, int initialSize, int maxSize, int growth, Factory<T> factory) {
+        if (initialSize < 0 || maxSize < initialSize || growth < 0) {
+            throw new IllegalArgumentException("Invalid sizes for pool " + name);
+        }
+        this.name = name;
+        this.factory = factory;
+        this.growth = growth;
+        this.maxSize = maxSize;
+        this.free = new GameObject[Math.max(initialSize, 1)];
+        fill(initialSize);
+    }//end constructor
+
+    /**
+     * Takes an object out of the pool and gives it a slot in its store. Its
+     * position, velocity, acceleration and size start at zero.
+     *
+     * @return the object, or null if the pool is empty and cannot grow
+     */
+    @SuppressWarnings("unchecked")
+    public T spawn() {
+        if (freeCount == 0) {
+            int added = Math.min(growth, maxSize - size);
+            if (added <= 0) {
+                exhaustions++;
+                return null;
+            }
+            grows++;
+            fill(added);
+        }
+        GameObject object = free[--freeCount];
+        free[freeCount] = null;
+        object.attach();
+        active++;
+        peakActive = Math.max(peakActive, active);
+        spawns++;
+        return (T) object;
+    }//end spawn
+
+    /**
+     * Returns a spawned object to the pool and frees its slot in its store.
+     *
+     * @param object the object to return
+     */
+    public void despawn(T object) {
+        object.detach();
+        free[freeCount++] = object;
+        active--;
+        despawns++;
+    }//end despawn
+
+    /**
+     * Creates objects and puts them in the pool.
+     */
+    private void fill(int count) {
+        if (size + count > free.length) {
+            free = Arrays.copyOf(free, size + count);
+        }
+        for (int i = 0; i < count; i++) {
+            T object = factory.create();
+            object.detach();
+            free[freeCount++] = object;
+        }
+        size += count;
+    }//end fill
+
+    // Getters
+    public String getName() {
+        return name;
+    }//end getName
+
+    public int getSize() {
+        return size;
+    }//end getSize
+
+    public int getMaxSize() {
+        return maxSize;
+    }//end getMaxSize
+
+    public int getActive() {
+        return active;
+    }//end getActive
+
+    public int getFree() {
+        return freeCount;
+    }//end getFree
+
+    public int getPeakActive() {
+        return peakActive;
+    }//end getPeakActive
+
+    public long getSpawns() {
+        return spawns;
+    }//end getSpawns
+
+    public long getDespawns() {
+        return despawns;
+    }//end getDespawns
+
+    public long getGrows() {
+        return grows;
+    }//end getGrows
+
+    public long getExhaustions() {
+        return exhaustions;
+    }//end getExhaustions
+
+}//end class
@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A recorded game session: the level, the simulation step, the seed of the
+ * random generator, the settings of the game that decide when enemies and
+ * stars are spawned and the keys held during every tick, followed by the
+ * state the game ended in.
+ *
+ * The keys are stored as runs of identical per-tick bitmasks, so a session
+ * takes a few bytes per key press. Since the game is deterministic for a given
+ * level, seed and input, playing the recording again must end in exactly the
+ * same state, which makes a recording both a regression test and a
+ * benchmark (see Replay). The size of the chunks, the chunks installed around
+ * the camera and the sizes of the pools change which objects are spawned and
+ * in which order, so a recording only plays back with the settings it was
+ * made with (see compareSettings).
+ *
+ * The file holds, in big-endian order:
+ * <pre>
+ *   header  magic "STKR" (int), version (short), level files (short length + UTF-8,
+ *           comma-separated, empty for Levels.SEQUENCE), step (double), seed (long)
+ *   settings chunk columns, chunk margin, enemy pool, most enemies, star pool,
+ *           most stars, pool growth (int each, see Game)
+ *   input   number of runs (int), then ticks (int) and key mask (byte) of each run
+ *   result  ticks (long), score (int), lives (int), finished (byte),
+ *           stickman x and y (double), camera offset (double), enemies (int), checksum (long)
+ * </pre>
+ */
+public class Recording {
+
+    public static final int MAGIC = 0x53544B52; // "STKR"
+    public static final short VERSION = 2; // Version of the format written by this class
+
+    private final String level; // Paths of the binary level files, empty for Levels.SEQUENCE
+    private final double step; // Length of one simulation step in seconds
+    private final long seed; // Seed of the random generator of the game
+
+    // Settings of the recorded game, those of the games this JVM creates until read from a file
+    private int chunkColumns = Game.CHUNK_COLUMNS, chunkMargin = Game.CHUNK_MARGIN;
+    private int enemyPool = Game.ENEMY_POOL, enemyPoolMax = Game.ENEMY_POOL_MAX;
+    private int starPool = Game.STAR_POOL, starPoolMax = Game.STAR_POOL_MAX, poolGrowth = Game.POOL_GROWTH;
+
+    private int[] runTicks = new int[64]; // Number of ticks of each run of identical keys
+    private byte[] runKeys = new byte[64]; // Keys held during each run
+    private int runs; // Number of runs
+    private long ticks; // Number of ticks recorded
+
+    // State the game ended in
+    private int score, lives, enemies;
+    private boolean finished;
+    private double x, y, offset;
+    private long checksum;
+
+    /**
+     * Starts a new recording.
+     *
+     * @param level the paths of the binary level files separated by commas, or an
+     *              empty string for Levels.SEQUENCE
+     * @param step  the length of one simulation step in seconds
+     * @param seed  the seed of the random generator of the game
+     */
+    public Recording(String level, double step, long seed) {
+        this.level = level;
+        this.step = step;
+        this.seed = seed;
+    }//end constructor
+
+    /**
+     * Records the keys held during one tick. Called before each update.
+     *
+     * @param keys the keys held, as returned by Input.getPressed()
+     */
+    public void record(long keys) {
+        if (runs > 0 && runKeys[runs - 1] == (byte) keys && runTicks[runs - 1] < Integer.MAX_VALUE) {
+            runTicks[runs - 1]++;
+            ticks++;
+        } else {
+            addRun(1, (byte) keys);
+        }
+    }//end record
+
+    /**
+     * Adds a run of ticks during which the same keys were held.
+     */
+    private void addRun(int length, byte keys) {
+        if (runs == runTicks.length) {
+            runTicks = Arrays.copyOf(runTicks, runs * 2);
+            runKeys = Arrays.copyOf(runKeys, runs * 2);
+        }
+        runTicks[runs] = length;
+        runKeys[runs] = keys;
+        runs++;
+        ticks += length;
+    }//end addRun
+
+    /**
+     * Remembers the state a game ended in.
+     *
+     * @param game the game that was recorded
+     */
+    public void finish(Game game) {
+        score = game.getScore();
+        lives = game.getNumLives();
+        finished = game.isFinished();
+        x = game.getStickman().getLeft();
+        y = game.getStickman().getUp();
+        offset = game.getXLvlOffset();
+        enemies = game.getEnemyCount();
+        checksum = checksum(game);
+    }//end finish
+
+    /**
+     * Creates a game in the same state as the recorded game when it started.
+     *
+     * @return the new game
+     * @throws IOException if the first level file cannot be read
+     */
+    public Game newGame() throws IOException {
+        try {
+            return new Game(Game.sequenceOf(level), seed);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }//end newGame
+
+    /**
+     * Plays the recorded keys into a game, one update per recorded tick.
+     *
+     * @param game a game created by newGame
+     */
+    public void play(Game game) {
+        for (int run = 0; run < runs; run++) {
+            Input.setPressed(runKeys[run]);
+            for (int tick = 0; tick < runTicks[run]; tick++) {
+                game.update(step);
+            }
+        }
+        Input.setPressed(0);
+    }//end play
+
+    /**
+     * Describes the differences between a game and the recorded end state.
+     *
+     * @param game a game the recording was played into
+     * @return null if the game ended in the recorded state, otherwise a description of the differences
+     */
+    public String compare(Game game) {
+        StringBuilder differences = new StringBuilder();
+        check(differences, "score", score, game.getScore());
+        check(differences, "lives", lives, game.getNumLives());
+        check(differences, "finished", finished ? 1 : 0, game.isFinished() ? 1 : 0);
+        check(differences, "x", x, game.getStickman().getLeft());
+        check(differences, "y", y, game.getStickman().getUp());
+        check(differences, "offset", offset, game.getXLvlOffset());
+        check(differences, "enemies", enemies, game.getEnemyCount());
+        if (checksum != checksum(game)) {
+            differences.append("checksum differs; ");
+        }
+        return differences.length() == 0 ? null : differences.toString();
+    }//end compare
+
+    /**
+     * Describes the settings of the recorded game that differ from those of
+     * the games this JVM creates. The recording cannot be played back until
+     * they are the same.
+     *
+     * @return null if the settings are the same, otherwise the system properties giving the recorded settings
+     */
+    public String compareSettings() {
+        StringBuilder differences = new StringBuilder();
+        checkSetting(differences, "stickman.chunkColumns", chunkColumns, Game.CHUNK_COLUMNS);
+        checkSetting(differences, "stickman.chunkMargin", chunkMargin, Game.CHUNK_MARGIN);
+        checkSetting(differences, "stickman.enemyPool", enemyPool, Game.ENEMY_POOL);
+        checkSetting(differences, "stickman.enemyPoolMax", enemyPoolMax, Game.ENEMY_POOL_MAX);
+        checkSetting(differences, "stickman.starPool", starPool, Game.STAR_POOL);
+        checkSetting(differences, "stickman.starPoolMax", starPoolMax, Game.STAR_POOL_MAX);
+        checkSetting(differences, "stickman.poolGrowth", poolGrowth, Game.POOL_GROWTH);
+        return differences.length() == 0 ? null : differences.toString().trim();
+    }//end compareSettings
+
+    private static void checkSetting(StringBuilder differences, String property, int recorded, int current) {
+        if (recorded != current) {
+            differences.append("-D").append(property).append('=').append(recorded).append(' ');
+        }
+    }//end checkSetting
+
+    private static void check(StringBuilder differences, String name, double expected, double actual) {
+        if (Double.compare(expected, actual) != 0) {
+            differences.append(name).append(" expected ").append(expected).append(" but was ").append(actual).append("; ");
+        }
+    }//end check
+
+    /**
+     * Computes a hash of the state of a game: the position and velocity of
+     * the stickman and of every enemy, the active stars, the score, the lives
+     * and the state of the random generator.
+     *
+     * @param game the game
+     * @return the hash
+     */
+    public static long checksum(Game game) {
+        long hash = 17;
+        hash = mix(hash, game.getScore());
+        hash = mix(hash, game.getNumLives());
+        hash = mix(hash, Double.doubleToLongBits(game.getXLvlOffset()));
+        hash = mix(hash, game.getRandom().getState());
+        hash = mix(hash, game.getStickman());
+        Enemy[] enemies = game.getEnemies();
+        for (int i = 0; i < game.getEnemyCount(); i++) {
+            hash = mix(hash, enemies[i]);
+        }
+        Star[] stars = game.getStars();
+        for (int i = 0; i < game.getStarCount(); i++) {
+            hash = mix(hash, stars[i].isActive() ? 1 : 0);
+        }
+        return hash;
+    }//end checksum
+
+    private static long mix(long hash, GameObject object) {
+        hash = mix(hash, Double.doubleToLongBits(object.getLeft()));
+        hash = mix(hash, Double.doubleToLongBits(object.getUp()));
+        hash = mix(hash, Double.doubleToLongBits(object.getVelocityX()));
+        return mix(hash, Double.doubleToLongBits(object.getVelocityY()));
+    }//end mix
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }//end mix
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        byte[] name = level.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 2 + 2 + name.length + 8 + 8 + 7 * 4 + 4 + runs * 5
+                + 8 + 4 + 4 + 1 + 8 * 3 + 4 + 8);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) name.length).put(name).putDouble(step).putLong(seed);
+        buffer.putInt(chunkColumns).putInt(chunkMargin);
+        buffer.putInt(enemyPool).putInt(enemyPoolMax).putInt(starPool).putInt(starPoolMax).putInt(poolGrowth);
+        buffer.putInt(runs);
+        for (int run = 0; run < runs; run++) {
+            buffer.putInt(runTicks[run]).put(runKeys[run]);
+        }
+        buffer.putLong(ticks).putInt(score).putInt(lives).put((byte) (finished ? 1 : 0));
+        buffer.putDouble(x).putDouble(y).putDouble(offset).putInt(enemies).putLong(checksum);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }//end write
+
+    /**
+     * Reads a recording from a file.
+     *
+     * @param path the path of the file
+     * @return the recording
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static Recording read(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+        }
+        buffer.flip();
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a recording");
+            }
+            if (buffer.getShort() != VERSION) {
+                throw new IOException("Unsupported recording version");
+            }
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            Recording recording = new Recording(new String(name, StandardCharsets.UTF_8), buffer.getDouble(),
+                    buffer.getLong());
+            recording.chunkColumns = buffer.getInt();
+            recording.chunkMargin = buffer.getInt();
+            recording.enemyPool = buffer.getInt();
+            recording.enemyPoolMax = buffer.getInt();
+            recording.starPool = buffer.getInt();
+            recording.starPoolMax = buffer.getInt();
+            recording.poolGrowth = buffer.getInt();
+            int runs = buffer.getInt();
+            for (int run = 0; run < runs; run++) {
+                int length = buffer.getInt();
+                recording.addRun(length, buffer.get());
+            }
+            if (buffer.getLong() != recording.ticks) {
+                throw new IOException("Corrupted recording");
+            }
+            recording.score = buffer.getInt();
+            recording.lives = buffer.getInt();
+            recording.finished = buffer.get() != 0;
+            recording.x = buffer.getDouble();
+            recording.y = buffer.getDouble();
+            recording.offset = buffer.getDouble();
+            recording.enemies = buffer.getInt();
+            recording.checksum = buffer.getLong();
+            return recording;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated recording", e);
+        }
+    }//end read
+
+    // Getters
+    public long getTicks() {
+        return ticks;
+    }//end getTicks
+
+    public int getRuns() {
+        return runs;
+    }//end getRuns
+
+    public double getStep() {
+        return step;
+    }//end getStep
+
+    public long getSeed() {
+        return seed;
+    }//end getSeed
+
+}//end class
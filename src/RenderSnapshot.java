@@ -0,0 +1,331 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Everything the GameRenderer needs to draw one state of a Game.
+ *
+ * A snapshot is filled by the thread that runs the simulation, right after an
+ * update, and then only read by the thread that draws it. It holds the
+ * previous and current position, size and sprite of every object that may be
+ * visible, the chunks of tiles in memory, the camera, the score and lives and
+ * the counters shown in the profiler overlay. Only the objects near the camera
+ * are copied, so filling a snapshot costs about as much as drawing it.
+ *
+ * A snapshot can also be filled from the states a NetClient receives from a
+ * GameServer, so a remote game is drawn the same way as a local one.
+ *
+ * Snapshots are reused: their arrays only grow when more objects are visible
+ * than ever before, so filling one does not allocate (see SnapshotBuffer).
+ */
+public class RenderSnapshot {
+
+    /**
+     * The use of an ObjectPool when the snapshot was taken.
+     */
+    public static class PoolUse {
+
+        private String name; // Name of the pool
+        private int active; // Objects spawned
+        private int size; // Objects created
+        private long grows; // Times the pool grew
+        private long exhaustions; // Spawns that failed because the pool was full
+
+        /**
+         * Copies the counters of a pool.
+         *
+         * @param pool the pool
+         */
+        void copy(ObjectPool<?> pool) {
+            name = pool.getName();
+            active = pool.getActive();
+            size = pool.getSize();
+            grows = pool.getGrows();
+            exhaustions = pool.getExhaustions();
+        }//end copy
+
+        /**
+         * Sets every counter to zero, for a pool that is not known.
+         *
+         * @param name the name shown for the pool
+         */
+        void clear(String name) {
+            this.name = name;
+            active = size = 0;
+            grows = exhaustions = 0;
+        }//end clear
+
+        // Getters
+        public String getName() {
+            return name;
+        }//end getName
+
+        public int getActive() {
+            return active;
+        }//end getActive
+
+        public int getSize() {
+            return size;
+        }//end getSize
+
+        public long getGrows() {
+            return grows;
+        }//end getGrows
+
+        public long getExhaustions() {
+            return exhaustions;
+        }//end getExhaustions
+
+    }//end class
+
+    private int count; // Number of objects in the snapshot; the first one is the stickman
+    private double[] prevX = new double[64], prevY = new double[64]; // Position of each object at the previous update
+    private double[] x = new double[64], y = new double[64]; // Position of each object at the last update
+    private double[] width = new double[64], height = new double[64]; // Size of each object
+    private int[] sprite = new int[64]; // SpriteId of each object
+    private ArrayList<LevelChunk> chunks = new ArrayList<>(); // Chunks in memory, from left to right
+    private int chunkColumns; // Number of columns of a chunk
+    private double prevXLvlOffset, xLvlOffset; // Camera offset at the previous and the last update
+    private int score, numLives; // Score and lives of the player
+    private boolean finished, won; // State of the game
+    private int enemyCount, starCount; // Objects created so far
+    private PoolUse enemyPool = new PoolUse(), starPool = new PoolUse(); // Use of the pools
+    private long tick; // Number of updates run before the snapshot was taken
+    private long time; // Time the last update stands for, from System.nanoTime()
+    private long step; // Length of an update, in nanoseconds
+
+    private ArrayList<GameObject> enemies = new ArrayList<>(); // Reused results of the enemy query
+    private ArrayList<Star> stars = new ArrayList<>(); // Reused results of the star query
+
+    /**
+     * Copies the state of a game. Must be called by the thread that updates
+     * the game, between two updates.
+     *
+     * @param game the game
+     * @param tick the number of updates run so far
+     * @param time the time the last update stands for, from System.nanoTime()
+     * @param step the length of an update, in seconds
+     */
+    public void capture(Game game, long tick, long time, double step) {
+        this.tick = tick;
+        this.time = time;
+        this.step = (long) (step * 1e9);
+        prevXLvlOffset = game.getRenderXLvlOffset(0);
+        xLvlOffset = game.getXLvlOffset();
+        score = game.getScore();
+        numLives = game.getNumLives();
+        finished = game.isFinished();
+        won = game.isWon();
+        enemyCount = game.getEnemyCount();
+        starCount = game.getStarCount();
+        enemyPool.copy(game.getEnemyPool());
+        starPool.copy(game.getStarPool());
+        chunkColumns = game.getStreamer().getChunkColumns();
+        chunks.clear();
+        chunks.addAll(game.getChunks());
+
+        // The objects seen by the camera anywhere between the two updates
+        double left = Math.min(prevXLvlOffset, xLvlOffset);
+        double right = Math.max(prevXLvlOffset, xLvlOffset) + World.WIDTH;
+        count = 0;
+        add(game.getStickman());
+        enemies.clear();
+        game.collectEnemies(left, right, enemies);
+        for (int i = 0; i < enemies.size(); i++) {
+            add(enemies.get(i));
+        }
+        stars.clear();
+        game.collectStars(left, right, stars);
+        for (int i = 0; i < stars.size(); i++) {
+            if (stars.get(i).isActive()) {
+                add(stars.get(i));
+            }
+        }
+    }//end capture
+
+    /**
+     * Copies the state received from a GameServer. Objects are drawn moving
+     * from where they were in the previous state, unless they just appeared
+     * or jumped further than a tile, like a pooled object spawned again.
+     *
+     * @param previous     the state received before, the same as state for none
+     * @param state        the latest state received
+     * @param chunks       the chunks around the camera of the state, from left to right
+     * @param chunkColumns the number of columns of a chunk
+     * @param time         the time the state was received, from System.nanoTime()
+     * @param step         the length of a tick of the server, in seconds
+     */
+    public void capture(NetState previous, NetState state, ArrayList<LevelChunk> chunks, int chunkColumns,
+            long time, double step) {
+        this.tick = state.getTick();
+        this.time = time;
+        this.step = (long) (step * 1e9);
+        prevXLvlOffset = previous.getXLvlOffset();
+        xLvlOffset = state.getXLvlOffset();
+        score = state.getScore();
+        numLives = state.getNumLives();
+        finished = state.isFinished();
+        won = state.isWon();
+        enemyCount = starCount = 0; // Only the server knows them
+        enemyPool.clear("remote");
+        starPool.clear("remote");
+        this.chunkColumns = chunkColumns;
+        this.chunks.clear();
+        this.chunks.addAll(chunks);
+
+        count = 0;
+        for (int i = 0; i < state.getCount(); i++) {
+            int id = state.getId(i);
+            double x = state.getX(id), y = state.getY(id);
+            double fromX = x, fromY = y;
+            if (previous.has(id) && Math.abs(previous.getX(id) - x) + Math.abs(previous.getY(id) - y) < World.TILE_SIZE) {
+                fromX = previous.getX(id);
+                fromY = previous.getY(id);
+            }
+            add(fromX, fromY, x, y, state.getWidth(id), state.getHeight(id), state.getSprite(id));
+        }
+    }//end capture
+
+    /**
+     * Copies one game object.
+     */
+    private void add(GameObject object) {
+        add(object.getRenderX(0), object.getRenderY(0), object.getLeft(), object.getUp(),
+                object.getWidth(), object.getHeight(), object.getSprite());
+    }//end add
+
+    /**
+     * Adds one object, growing the arrays if they are full.
+     */
+    private void add(double fromX, double fromY, double toX, double toY, double w, double h, int id) {
+        if (count == x.length) {
+            int length = count * 2;
+            prevX = Arrays.copyOf(prevX, length);
+            prevY = Arrays.copyOf(prevY, length);
+            x = Arrays.copyOf(x, length);
+            y = Arrays.copyOf(y, length);
+            width = Arrays.copyOf(width, length);
+            height = Arrays.copyOf(height, length);
+            sprite = Arrays.copyOf(sprite, length);
+        }
+        prevX[count] = fromX;
+        prevY[count] = fromY;
+        x[count] = toX;
+        y[count] = toY;
+        width[count] = w;
+        height[count] = h;
+        sprite[count] = id;
+        count++;
+    }//end add
+
+    /**
+     * Gets how far a moment is between the previous and the last update, for
+     * a snapshot drawn by another thread than the simulation.
+     *
+     * @param now the moment, from System.nanoTime()
+     * @return the interpolation factor, from 0 to 1
+     */
+    public double getAlpha(long now) {
+        if (step <= 0) {
+            return 1;
+        }
+        return Math.max(0, Math.min(1, (double) (now - time) / step));
+    }//end getAlpha
+
+    /**
+     * Gets the x-coordinate to draw an object at.
+     *
+     * @param i     the index of the object, 0 for the stickman
+     * @param alpha how far the frame is between the previous and the last update
+     * @return the interpolated x-coordinate
+     */
+    public double getRenderX(int i, double alpha) {
+        return prevX[i] + (x[i] - prevX[i]) * alpha;
+    }//end getRenderX
+
+    /**
+     * Gets the y-coordinate to draw an object at.
+     *
+     * @param i     the index of the object, 0 for the stickman
+     * @param alpha how far the frame is between the previous and the last update
+     * @return the interpolated y-coordinate
+     */
+    public double getRenderY(int i, double alpha) {
+        return prevY[i] + (y[i] - prevY[i]) * alpha;
+    }//end getRenderY
+
+    /**
+     * Gets the camera offset to draw the level at.
+     *
+     * @param alpha how far the frame is between the previous and the last update
+     * @return the interpolated camera offset
+     */
+    public double getRenderXLvlOffset(double alpha) {
+        return prevXLvlOffset + (xLvlOffset - prevXLvlOffset) * alpha;
+    }//end getRenderXLvlOffset
+
+    // Getters
+    public int getCount() {
+        return count;
+    }//end getCount
+
+    public double getWidth(int i) {
+        return width[i];
+    }//end getWidth
+
+    public double getHeight(int i) {
+        return height[i];
+    }//end getHeight
+
+    public int getSprite(int i) {
+        return sprite[i];
+    }//end getSprite
+
+    public ArrayList<LevelChunk> getChunks() {
+        return chunks;
+    }//end getChunks
+
+    public int getChunkColumns() {
+        return chunkColumns;
+    }//end getChunkColumns
+
+    public double getXLvlOffset() {
+        return xLvlOffset;
+    }//end getXLvlOffset
+
+    public int getScore() {
+        return score;
+    }//end getScore
+
+    public int getNumLives() {
+        return numLives;
+    }//end getNumLives
+
+    public boolean isFinished() {
+        return finished;
+    }//end isFinished
+
+    public boolean isWon() {
+        return won;
+    }//end isWon
+
+    public int getEnemyCount() {
+        return enemyCount;
+    }//end getEnemyCount
+
+    public int getStarCount() {
+        return starCount;
+    }//end getStarCount
+
+    public PoolUse getEnemyPool() {
+        return enemyPool;
+    }//end getEnemyPool
+
+    public PoolUse getStarPool() {
+        return starPool;
+    }//end getStarPool
+
+    public long getTick() {
+        return tick;
+    }//end getTick
+
+}//end class
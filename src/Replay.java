@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Plays a Recording back without the JavaFX toolkit, as fast as possible.
+ *
+ * Each playback starts a new game with the recorded level and seed, feeds it
+ * the recorded keys and checks that it ends in the recorded state. The tick
+ * rate reached is printed, so the same recording can compare the speed of
+ * two builds as well as their behavior.
+ *
+ * Usage: java Replay recording [playbacks]
+ *
+ * The recording must be played back with the settings it was made with (see
+ * Recording.compareSettings); if they differ, nothing is played and the
+ * system properties to set are printed.
+ *
+ * The exit status is 1 if the settings differ or a playback did not end in
+ * the recorded state.
+ */
+public class Replay {
+
+    /**
+     * Plays a recording back and checks the result.
+     *
+     * @param args the recording file and the number of playbacks (default 1)
+     * @throws IOException if the recording or its level cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java Replay recording [playbacks]");
+            System.exit(1);
+        }
+        Recording recording = Recording.read(Path.of(args[0]));
+        int playbacks = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        String settings = recording.compareSettings();
+        if (settings != null) {
+            System.err.println("The recording was made with other settings, run with " + settings);
+            System.exit(1);
+        }
+
+        boolean identical = true;
+        for (int i = 0; i < playbacks; i++) {
+            Game game = recording.newGame();
+            long start = System.nanoTime();
+            recording.play(game);
+            double seconds = (System.nanoTime() - start) * 1e-9;
+
+            String differences = recording.compare(game);
+            System.out.printf("playback %d: ticks=%d time=%.3fs rate=%.0f ticks/s %s%n", i + 1,
+                    recording.getTicks(), seconds, recording.getTicks() / seconds,
+                    differences == null ? "identical" : "DIFFERENT: " + differences);
+            identical &= differences == null;
+        }
+        if (!identical) {
+            System.exit(1);
+        }
+    }//end main
+
+}//end class
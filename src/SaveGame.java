@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Saves the full state of a game to a file and loads it back.
+ *
+ * The state is written in a compact binary format (see Game.writeState)
+ * into a direct buffer kept from one save to the next, and handed to a
+ * FileChannel in one write, so a save allocates nothing once the buffer is
+ * big enough and takes a fraction of a frame. The file is written next to
+ * the save and then moved over it, so a crash while saving leaves the last
+ * save as it was.
+ *
+ * Loading puts a game playing the same levels back in the saved state; the
+ * game then goes on exactly as the saved game would have with the same keys.
+ * The saved state does not depend on the seed of the game it is loaded into.
+ * A save that cannot be loaded, because it is damaged or was made with other
+ * levels, leaves the game as it was.
+ *
+ * The file holds, in big-endian order:
+ * <pre>
+ *   header  magic "STKS" (int), version (short), number of levels (short),
+ *           fingerprint of the levels (long, see LevelLoader.fingerprint),
+ *           length of the state (int), CRC-32C of the state (int)
+ *   state   level, score, lives (int), finished, won and collision flags (byte),
+ *           collision and star timers (double), random state (long),
+ *           camera offset and previous offset (double), flow field first column
+ *           and columns (int), stars collected in evicted chunks (int count of chunks,
+ *           then for each its index and its int count of longs, then the longs),
+ *           the stickman, the enemies (int count, then each) and the stars (same)
+ *   object  x, y, vx, vy, ax, ay, width, height, previous x and y (double), sprite (short),
+ *           then for the stickman its jump (byte) and animation time (double),
+ *           for an enemy its jump (byte) and maximum speed (double),
+ *           for a star whether it is active (byte)
+ * </pre>
+ */
+public class SaveGame {
+
+    public static final int MAGIC = 0x53544B53; // "STKS"
+    public static final short VERSION = 3; // Version of the format written by this class
+
+    private static final int HEADER = 4 + 2 + 2 + 8 + 4 + 4; // Bytes before the state
+    private static final int INITIAL_SIZE = 1 << 16; // Size of the buffer before it first grows
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_SIZE); // Reused for every save and load
+    private final CRC32C crc = new CRC32C(); // Checks that the state was not damaged
+
+    // Counters
+    private long saves, loads; // Number of games saved and loaded
+    private long lastSaveNanos, lastLoadNanos; // Time the last save and load took
+    private int lastSize; // Bytes of the last file saved or loaded
+
+    /**
+     * Writes the state of a game into the buffer, after the header, growing
+     * the buffer until the state fits.
+     *
+     * @param game the game to save, in between two updates
+     * @return the number of bytes of the save, header included
+     */
+    public int encode(Game game) {
+        while (true) {
+            buffer.clear();
+            buffer.position(HEADER);
+            try {
+                game.writeState(buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            }
+        }
+        int length = buffer.position() - HEADER;
+        buffer.flip();
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) game.getLevelCount());
+        buffer.putLong(game.getLevelFingerprint()).putInt(length);
+        buffer.putInt(HEADER - 4, checksum(HEADER, length));
+        buffer.position(0);
+        return buffer.limit();
+    }//end encode
+
+    /**
+     * Puts a game in the state held by the buffer. If the state cannot be
+     * loaded, the game is left as it was.
+     *
+     * @param game the game to load into, playing the same levels as the saved game
+     * @throws IOException if the buffer does not hold a save of this version
+     *                     or of a game playing the same levels
+     */
+    public void decode(Game game) throws IOException {
+        try {
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a saved game");
+            }
+            if (buffer.getShort(4) != VERSION) {
+                throw new IOException("Unsupported saved game version");
+            }
+            if (buffer.getShort(6) != game.getLevelCount()) {
+                throw new IOException("The saved game plays " + buffer.getShort(6) + " levels, not "
+                        + game.getLevelCount());
+            }
+            if (buffer.getLong(8) != game.getLevelFingerprint()) {
+                throw new IOException("The saved game plays other levels");
+            }
+            int length = buffer.getInt(16);
+            if (length < 0 || length > buffer.limit() - HEADER) {
+                throw new IOException("Truncated saved game");
+            }
+            if (buffer.getInt(20) != checksum(HEADER, length)) {
+                throw new IOException("Corrupted saved game");
+            }
+            buffer.position(HEADER);
+            game.readState(buffer);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Truncated saved game", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Saved game does not fit the levels", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Could not load the saved game", e);
+        }
+    }//end decode
+
+    /**
+     * Computes the CRC-32C of a part of the buffer, leaving its position and limit as they were.
+     */
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }//end checksum
+
+    /**
+     * Saves a game to a file, replacing the last save.
+     *
+     * @param game the game to save, in between two updates
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Game game, Path path) throws IOException {
+        long start = System.nanoTime();
+        encode(game);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSize = buffer.limit();
+        lastSaveNanos = System.nanoTime() - start;
+        saves++;
+    }//end save
+
+    /**
+     * Loads a game from a file.
+     *
+     * @param game the game to load into, playing the same levels as the saved game
+     * @param path the path of the file
+     * @throws IOException if the file cannot be read or does not hold a save the game can load
+     */
+    public void load(Game game, Path path) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Not a saved game");
+            }
+            if (size > buffer.capacity()) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit((int) size - 1) << 1);
+            }
+            buffer.clear();
+            buffer.limit((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+        }
+        decode(game);
+        lastSize = buffer.limit();
+        lastLoadNanos = System.nanoTime() - start;
+        loads++;
+    }//end load
+
+    // Getters for the counters
+    public long getSaves() {
+        return saves;
+    }//end getSaves
+
+    public long getLoads() {
+        return loads;
+    }//end getLoads
+
+    public long getLastSaveNanos() {
+        return lastSaveNanos;
+    }//end getLastSaveNanos
+
+    public long getLastLoadNanos() {
+        return lastLoadNanos;
+    }//end getLastLoadNanos
+
+    public int getLastSize() {
+        return lastSize;
+    }//end getLastSize
+
+}//end class
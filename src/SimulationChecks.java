@@ -0,0 +1,115 @@
+import java.io.IOException;
+
+/**
+ * Checks properties of the simulation that a Replay of one recording cannot
+ * show, without the JavaFX toolkit.
+ *
+ * Usage: java SimulationChecks
+ *
+ * Each check prints one line. The exit status is 1 if a check failed.
+ */
+public class SimulationChecks {
+
+    private static final double STEP = 1.0 / 120; // Length of one simulation step in seconds
+
+    /**
+     * Runs every check.
+     *
+     * @param args not used
+     * @throws IOException if a generated level cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        boolean passed = checkPoolsBounded();
+        passed &= checkParallelSameAsSerial();
+        if (!passed) {
+            System.exit(1);
+        }
+    }//end main
+
+    /**
+     * Takes the stickman through a long generated level and checks that the
+     * pools of enemies and stars never hold more objects than the installed
+     * chunks can spawn at once. The stickman is carried along the top of the
+     * level faster than any enemy runs, so the whole level streams past the
+     * camera in a few seconds; the lives it loses on the way are ignored.
+     *
+     * @return true if the check passed
+     */
+    static boolean checkPoolsBounded() {
+        Game game = new Game(new LevelGenerator(100_000, 50_000, 20_000, 1), 1);
+        ObjectPool<Enemy> enemies = game.getEnemyPool();
+        ObjectPool<Star> stars = game.getStarPool();
+        int enemyLimit = enemies.getSize(), starLimit = stars.getSize();
+        int enemyWindow = 0, starWindow = 0; // Most objects spawned by the installed chunks at once
+        boolean leaked = false;
+        Stickman stickman = game.getStickman();
+        while (stickman.getRight() < game.getLevelWidth() - 1) {
+            stickman.setX(stickman.getLeft() + World.TILE_SIZE / 2);
+            stickman.setY(0);
+            Input.setPressed(1L << Key.RIGHT.ordinal());
+            game.update(STEP);
+
+            int enemySpawns = 0, starSpawns = 0;
+            for (LevelChunk chunk : game.getChunks()) {
+                enemySpawns += chunk.getEnemySpawns().length / 2;
+                starSpawns += chunk.getStarSpawns().length / 2;
+            }
+            enemyWindow = Math.max(enemyWindow, enemySpawns);
+            starWindow = Math.max(starWindow, starSpawns);
+            leaked |= enemies.getActive() != game.getEnemyCount() || stars.getActive() != game.getStarCount();
+        }
+        Input.setPressed(0);
+
+        // A pool may grow once past what the busiest window needs
+        enemyLimit = Math.max(enemyLimit, enemyWindow + Game.POOL_GROWTH);
+        starLimit = Math.max(starLimit, starWindow + Game.POOL_GROWTH);
+        boolean passed = !leaked && enemies.getSize() <= enemyLimit && stars.getSize() <= starLimit;
+        System.out.printf("pools bounded: enemies %d (limit %d, peak %d) stars %d (limit %d, peak %d)%s %s%n",
+                enemies.getSize(), enemyLimit, enemies.getPeakActive(), stars.getSize(), starLimit,
+                stars.getPeakActive(), leaked ? " leaked" : "", passed ? "passed" : "FAILED");
+        return passed;
+    }//end checkPoolsBounded
+
+    /**
+     * Records a game on a level crowded with enemies, then plays the
+     * recording back twice, once with every enemy update in parallel and once
+     * with none, and checks that both end in the recorded state.
+     *
+     * @return true if the check passed
+     * @throws IOException if the level cannot be opened
+     */
+    static boolean checkParallelSameAsSerial() throws IOException {
+        Recording recording = new Recording("generated:20000:60000:2000:7", STEP, 3);
+        Game recorded = recording.newGame();
+        for (int tick = 0; tick < 3_000; tick++) {
+            long keys = 1L << Key.RIGHT.ordinal();
+            if (tick % 90 < 3) {
+                keys |= 1L << Key.UP.ordinal();
+            }
+            recording.record(keys);
+            Input.setPressed(keys);
+            recorded.update(STEP);
+        }
+        Input.setPressed(0);
+        recording.finish(recorded);
+
+        Game parallel = recording.newGame();
+        parallel.setParallelThreshold(1);
+        recording.play(parallel);
+        Game serial = recording.newGame();
+        serial.setParallelThreshold(Integer.MAX_VALUE);
+        recording.play(serial);
+
+        String parallelDifferences = recording.compare(parallel);
+        String serialDifferences = recording.compare(serial);
+        boolean passed = parallelDifferences == null && serialDifferences == null
+                && Recording.checksum(parallel) == Recording.checksum(serial);
+        System.out.printf("parallel same as serial: %d ticks, %d enemies, parallel %s, serial %s %s%n",
+                recording.getTicks(), recorded.getEnemyCount(),
+                parallelDifferences == null ? "identical" : "DIFFERENT: " + parallelDifferences,
+                serialDifferences == null ? "identical" : "DIFFERENT: " + serialDifferences,
+                passed ? "passed" : "FAILED");
+        return passed;
+    }//end checkParallelSameAsSerial
+
+}//end class
@@ -0,0 +1,93 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a Game on a thread of its own, away from the JavaFX thread.
+ *
+ * The thread drives a GameLoop with its own clock, so the game keeps its tick
+ * rate when frames are slow to draw, and drawing is not held up by a slow
+ * update. After every frame of steps, it copies the state of the game into the
+ * back RenderSnapshot of a SnapshotBuffer and publishes it; the renderer only
+ * ever reads snapshots, never the game. Between two steps the thread sleeps.
+ *
+ * The game, the loop and its recording belong to the simulation thread while
+ * it runs: they may only be used again once stop has returned.
+ */
+public class SimulationThread {
+
+    private final Game game; // The game being run
+    private final GameLoop loop; // Runs the fixed steps of the game
+    private final SnapshotBuffer snapshots; // Carries the state of the game to the renderer
+    private volatile boolean running; // Cleared to ask the thread to stop
+    private Thread thread; // The simulation thread, null until started
+
+    /**
+     * Constructs a simulation for a game. Nothing runs until start is called.
+     *
+     * @param game      the game to run
+     * @param loop      the loop running the steps of the game
+     * @param snapshots the buffer receiving the state of the game
+     */
+    public SimulationThread(Game game, GameLoop loop, SnapshotBuffer snapshots) {
+        this.game = game;
+        this.loop = loop;
+        this.snapshots = snapshots;
+    }//end constructor
+
+    /**
+     * Publishes the first snapshot of the game and starts the thread.
+     */
+    public void start() {
+        publish(System.nanoTime());
+        running = true;
+        thread = Thread.ofPlatform().name("simulation").daemon().start(this::run);
+    }//end start
+
+    /**
+     * Stops the thread and waits for it to finish its step.
+     */
+    public void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }//end stop
+
+    /**
+     * Runs the steps that are due, publishes the result and sleeps until the
+     * next step, until stop is called.
+     */
+    private void run() {
+        long stepNanos = (long) (loop.getStep() * 1e9);
+        long last = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            long start = FrameProfiler.start();
+            int steps = loop.advance(game, (now - last) * 1e-9);
+            FrameProfiler.stop(FrameProfiler.SIMULATION, start);
+            last = now;
+            if (steps > 0) {
+                publish(now);
+            }
+            LockSupport.parkNanos((long) ((1 - loop.getAlpha()) * stepNanos));
+        }
+    }//end run
+
+    /**
+     * Copies the game into the back snapshot and hands it to the renderer.
+     */
+    private void publish(long now) {
+        long start = FrameProfiler.start();
+        // The last step stands for the moment the accumulator last crossed a step
+        long time = now - (long) (loop.getAlpha() * loop.getStep() * 1e9);
+        snapshots.getBack().capture(game, loop.getTicks(), time, loop.getStep());
+        snapshots.publish();
+        FrameProfiler.stop(FrameProfiler.SNAPSHOT, start);
+    }//end publish
+
+}//end class
@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands RenderSnapshots from the simulation thread to the render thread
+ * without locks.
+ *
+ * The buffer holds three snapshots: the back one, filled by the simulation;
+ * the front one, drawn by the renderer; and a middle one waiting between
+ * them. Publishing swaps the back snapshot with the middle one and marks it
+ * as fresh; acquiring swaps the front snapshot with the middle one if it is
+ * fresh. Both swaps are a single atomic operation, so neither thread ever
+ * waits for the other and neither ever sees a snapshot the other is using.
+ * When the simulation publishes faster than the renderer draws, the snapshots
+ * in between are skipped; when the renderer is faster, it draws the same
+ * snapshot again.
+ *
+ * Only one thread may publish and only one thread may acquire.
+ */
+public class SnapshotBuffer {
+
+    private static final int INDEX = 3; // Bits of the middle index holding the snapshot
+    private static final int FRESH = 4; // Set while the middle snapshot was published and not yet acquired
+
+    private final RenderSnapshot[] snapshots = {new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()};
+    private final AtomicInteger middle = new AtomicInteger(2); // Index of the middle snapshot, plus FRESH
+    private int back = 0; // Index of the snapshot being filled, only used by the simulation thread
+    private int front = 1; // Index of the snapshot being drawn, only used by the render thread
+    private long published; // Snapshots published, written by the simulation thread
+    private long skipped; // Snapshots replaced before they were drawn, written by the simulation thread
+
+    /**
+     * Gets the snapshot the simulation fills next.
+     *
+     * @return the back snapshot
+     */
+    public RenderSnapshot getBack() {
+        return snapshots[back];
+    }//end getBack
+
+    /**
+     * Makes the back snapshot available to the renderer and gives the
+     * simulation another one to fill.
+     */
+    public void publish() {
+        int previous = middle.getAndSet(back | FRESH);
+        if ((previous & FRESH) != 0) {
+            skipped++;
+        }
+        back = previous & INDEX;
+        published++;
+    }//end publish
+
+    /**
+     * Gets the latest snapshot published.
+     *
+     * @return the front snapshot, which stays the same until the next call
+     */
+    public RenderSnapshot acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return snapshots[front];
+    }//end acquire
+
+    // Getters for the statistics, written by the simulation thread
+    public long getPublished() {
+        return published;
+    }//end getPublished
+
+    public long getSkipped() {
+        return skipped;
+    }//end getSkipped
+
+}//end class
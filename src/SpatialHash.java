@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A uniform grid that hashes game objects into square cells so that collision
+ * checks only have to look at objects close to each other.
+ *
+ * Every object is stored once, in the cell containing its top-left corner.
+ * Queries therefore widen the searched area by the size of the biggest object
+ * stored (plus one neighbouring cell) so no overlapping object is missed.
+ * Static objects (platforms, lava, stars) are inserted once when the level is
+ * built; dynamic objects (enemies) are cleared and inserted again every tick.
+ *
+ * Each object remembers the cell it was inserted into, so it is removed from
+ * that cell even if it moved since. An object can only be in one grid at a
+ * time.
+ *
+ * @param <T> the type of game object stored in the grid
+ */
+public class SpatialHash<T extends GameObject> {
+
+    private final double cellSize; // Width and height of a cell in pixels
+    private final int mask; // Number of buckets minus one (the number of buckets is a power of two)
+    private final Bucket[] staticBuckets; // Buckets of the objects inserted once
+    private final Bucket[] dynamicBuckets; // Buckets of the objects inserted every tick
+    private int[] touched; // Indices of the dynamic buckets that hold objects
+    private int touchedCount; // Number of entries used in touched
+    private int spanX = 1, spanY = 1; // Largest object stored, in cells
+
+    /**
+     * A bucket holding the objects of every cell hashed to it, together with
+     * the key of the cell each object belongs to.
+     */
+    private static class Bucket {
+        long[] keys = new long[4];
+        Object[] items = new Object[4];
+        int size;
+
+        void add(long key, Object item) {
+            if (size == items.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+            }
+            keys[size] = key;
+            items[size] = item;
+            size++;
+        }//end add
+
+        boolean remove(Object item) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    size--;
+                    keys[i] = keys[size];
+                    items[i] = items[size];
+                    items[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }//end remove
+    }//end class Bucket
+
+    /**
+     * Constructs an empty spatial hash.
+     *
+     * @param cellSize    the width and height of a cell in pixels
+     * @param bucketCount the number of buckets, rounded up to a power of two
+     */
+    public SpatialHash(double cellSize, int bucketCount) {
+        int size = Integer.highestOneBit(Math.max(bucketCount - 1, 1)) << 1;
+        this.cellSize = cellSize;
+        this.mask = size - 1;
+        this.staticBuckets = new Bucket[size];
+        this.dynamicBuckets = new Bucket[size];
+        this.touched = new int[16];
+    }//end constructor
+
+    /**
+     * Inserts an object that does not move.
+     *
+     * @param object the object to insert
+     */
+    public void insertStatic(T object) {
+        insert(staticBuckets, object);
+    }//end insertStatic
+
+    /**
+     * Removes an object previously inserted with insertStatic.
+     *
+     * @param object the object to remove
+     * @return true if the object was found
+     */
+    public boolean removeStatic(T object) {
+        return remove(staticBuckets, object);
+    }//end removeStatic
+
+    /**
+     * Inserts an object for the current tick only.
+     * Dynamic objects are dropped by the next call to clearDynamic.
+     *
+     * @param object the object to insert
+     */
+    public void insertDynamic(T object) {
+        int index = insert(dynamicBuckets, object);
+        if (dynamicBuckets[index].size == 1) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = index;
+        }
+    }//end insertDynamic
+
+    /**
+     * Removes an object inserted with insertDynamic since the last call to
+     * clearDynamic, for an object that leaves the game before the next tick.
+     *
+     * @param object the object to remove
+     * @return true if the object was found
+     */
+    public boolean removeDynamic(T object) {
+        return remove(dynamicBuckets, object);
+    }//end removeDynamic
+
+    /**
+     * Removes every dynamic object from the grid.
+     */
+    public void clearDynamic() {
+        for (int i = 0; i < touchedCount; i++) {
+            Bucket bucket = dynamicBuckets[touched[i]];
+            Arrays.fill(bucket.items, 0, bucket.size, null);
+            bucket.size = 0;
+        }
+        touchedCount = 0;
+    }//end clearDynamic
+
+    /**
+     * Collects every object that may overlap a rectangle. The candidates are
+     * appended to the given list; the caller still has to test them for an
+     * actual overlap.
+     *
+     * This method does not modify the grid, so several threads may query it
+     * at the same time as long as each one uses its own list.
+     *
+     * @param left  the left side of the rectangle
+     * @param up    the top side of the rectangle
+     * @param right the right side of the rectangle
+     * @param down  the bottom side of the rectangle
+     * @param out   the list receiving the candidates
+     */
+    @SuppressWarnings("unchecked")
+    public void query(double left, double up, double right, double down, ArrayList<T> out) {
+        int minX = cell(left) - spanX;
+        int minY = cell(up) - spanY;
+        int maxX = cell(right) + 1;
+        int maxY = cell(down) + 1;
+        // Rows first so candidates come out in the same order as the level layout
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                long key = key(cx, cy);
+                int index = hash(cx, cy);
+                Bucket bucket = staticBuckets[index];
+                if (bucket != null) {
+                    for (int i = 0; i < bucket.size; i++) {
+                        if (bucket.keys[i] == key) {
+                            out.add((T) bucket.items[i]);
+                        }
+                    }
+                }
+                bucket = dynamicBuckets[index];
+                if (bucket != null) {
+                    for (int i = 0; i < bucket.size; i++) {
+                        if (bucket.keys[i] == key) {
+                            out.add((T) bucket.items[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }//end query
+
+    /**
+     * Collects every object that may overlap another object.
+     *
+     * @param object the object to look around
+     * @param out    the list receiving the candidates
+     */
+    public void query(GameObject object, ArrayList<T> out) {
+        query(object.getLeft(), object.getUp(), object.getRight(), object.getDown(), out);
+    }//end query
+
+    /**
+     * Adds an object to the bucket of the cell containing its top-left corner.
+     *
+     * @return the index of the bucket
+     */
+    private int insert(Bucket[] buckets, T object) {
+        int cx = cell(object.getLeft());
+        int cy = cell(object.getUp());
+        int index = hash(cx, cy);
+        if (buckets[index] == null) {
+            buckets[index] = new Bucket();
+        }
+        object.cellKey = key(cx, cy);
+        buckets[index].add(object.cellKey, object);
+
+        // Remember the biggest object so queries look far enough around
+        spanX = Math.max(spanX, (int) Math.ceil((object.getRight() - object.getLeft()) / cellSize));
+        spanY = Math.max(spanY, (int) Math.ceil((object.getDown() - object.getUp()) / cellSize));
+        return index;
+    }//end insert
+
+    /**
+     * Removes an object from the bucket of the cell it was inserted into.
+     *
+     * @return true if the object was found
+     */
+    private boolean remove(Bucket[] buckets, T object) {
+        Bucket bucket = buckets[hash((int) (object.cellKey >> 32), (int) object.cellKey)];
+        return bucket != null && bucket.remove(object);
+    }//end remove
+
+    private int cell(double position) {
+        return (int) Math.floor(position / cellSize);
+    }//end cell
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }//end key
+
+    private int hash(int cx, int cy) {
+        int h = cx * 73856093 ^ cy * 19349663;
+        return (h ^ (h >>> 16)) & mask;
+    }//end hash
+
+}//end class
@@ -0,0 +1,66 @@
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+
+/**
+ * A named sub-region of a texture atlas.
+ *
+ * Sprites are created once by the AssetCache and shared by every game object
+ * that displays them. A sprite never changes after it has been created, so the
+ * same handle can safely be reused from frame to frame.
+ */
+public class Sprite {
+    private final String name; // The name the sprite is registered under
+    private final Image image; // The atlas (or standalone image) holding the pixels
+    private final double sx, sy; // The top-left corner of the region inside the image
+    private final double sw, sh; // The width and height of the region inside the image
+
+    /**
+     * Constructs a sprite covering a region of an image.
+     *
+     * @param name  the name of the sprite
+     * @param image the image holding the sprite's pixels
+     * @param sx    the x-coordinate of the region inside the image
+     * @param sy    the y-coordinate of the region inside the image
+     * @param sw    the width of the region
+     * @param sh    the height of the region
+     */
+    public Sprite(String name, Image image, double sx, double sy, double sw, double sh) {
+        this.name = name;
+        this.image = image;
+        this.sx = sx;
+        this.sy = sy;
+        this.sw = sw;
+        this.sh = sh;
+    }//end constructor
+
+    /**
+     * Draws the sprite scaled to the given destination rectangle.
+     *
+     * @param context the GraphicsContext used to draw the sprite
+     * @param x       the x-coordinate of the destination
+     * @param y       the y-coordinate of the destination
+     * @param w       the width of the destination
+     * @param h       the height of the destination
+     */
+    public void draw(GraphicsContext context, double x, double y, double w, double h) {
+        context.drawImage(image, sx, sy, sw, sh, x, y, w, h);
+    }//end draw
+
+    // Getters
+    public String getName() {
+        return name;
+    }//end getName
+
+    public Image getImage() {
+        return image;
+    }//end getImage
+
+    public double getWidth() {
+        return sw;
+    }//end getWidth
+
+    public double getHeight() {
+        return sh;
+    }//end getHeight
+
+}//end class
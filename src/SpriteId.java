@@ -0,0 +1,35 @@
+/**
+ * Identifiers of the sprites game objects can be drawn with.
+ *
+ * Game objects only store one of these numbers; the renderer turns it into an
+ * actual image through the AssetCache. Each identifier is also the index of
+ * the file the sprite is loaded from in FILES.
+ */
+public class SpriteId {
+    public static final int STICKMAN = 0;
+    public static final int STICKMAN_RUN_LEFT_1 = 1;
+    public static final int STICKMAN_RUN_LEFT_2 = 2;
+    public static final int STICKMAN_RUN_LEFT_3 = 3;
+    public static final int STICKMAN_RUN_LEFT_4 = 4;
+    public static final int STICKMAN_RUN_RIGHT_1 = 5;
+    public static final int STICKMAN_RUN_RIGHT_2 = 6;
+    public static final int STICKMAN_RUN_RIGHT_3 = 7;
+    public static final int STICKMAN_RUN_RIGHT_4 = 8;
+    public static final int ENEMY_LEFT = 9;
+    public static final int ENEMY_RIGHT = 10;
+    public static final int STAR = 11;
+    public static final int HEART = 12;
+    public static final int NONE = -1; // The object is not drawn with a sprite
+
+    /**
+     * The file each sprite is loaded from, indexed by identifier.
+     */
+    public static final String[] FILES = {
+        "stickman.png",
+        "stickmanRunLeft1.png", "stickmanRunLeft2.png", "stickmanRunLeft3.png", "stickmanRunLeft4.png",
+        "stickmanRunRight1.png", "stickmanRunRight2.png", "stickmanRunRight3.png", "stickmanRunRight4.png",
+        "enemyLeft.png", "enemyRight.png",
+        "star.png",
+        "heart.png"
+    };
+}//end class
@@ -1,39 +1,62 @@
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
+import java.nio.ByteBuffer;
 
 /**
  * The Star class represents a collectible item (star) in the game world.
- * The star has a position, size, and an image associated with it.
- * It is initially active and can be drawn on the screen.
+ * The star has a position, size, and a sprite associated with it.
+ * It is initially active and can be collected by the player.
  * This class extends the GameObject class.
  */
-public class Star extends GameObject{
+public final class Star extends GameObject{
 
     // A boolean that indicates if the star is active (collectible)
     private boolean isActive;
+    static final int STATE_BYTES = GameObject.STATE_BYTES + 1; // Bytes written by writeState
 
     /**
      * Constructs a new Star object at the specified position.
      * The star is stationary, with no velocity or acceleration.
-     * The image of the star is loaded from a file, and it is active by default.
+     * The star is drawn with the star sprite, and it is active by default.
      * The size of the star is half the size of a tile (used in the game world).
      *
+     * @param store The store holding the star.
      * @param x The x-coordinate of the star's position.
      * @param y The y-coordinate of the star's position.
      */
-    public Star(double x, double y) {
-        this.vx = 0; // Horizontal velocity (star is stationary)
-        this.vy = 0; // Vertical velocity (star is stationary)
-        this.ay = 0; // Vertical acceleration (star is stationary)
-        this.ax = 0; // Horizontal acceleration (star is stationary)
-        this.x = x; // Set the x-coordinate of the star
-        this.y = y; // Set the y-coordinate of the star
-        this.w = Main.TILE_SIZE / 2; // Set the width to half the size of a tile
-        this.h = Main.TILE_SIZE / 2; // Set the height to half the size of a tile
-        this.image = new Image("star.png"); // Load the image of the star
-        isActive = true; // The star is active by default (collectible)
+    public Star(EntityStore store, double x, double y) {
+        this(store);
+        spawn(x, y);
     }//end constructor
 
+    /**
+     * Constructs a Star object that is not placed yet, for an ObjectPool.
+     * It takes its place in the level when spawn is called.
+     *
+     * @param store The store holding the star.
+     */
+    public Star(EntityStore store) {
+        super(store); // Take a slot in the store
+    }//end constructor
+
+    /**
+     * Places the star in the level and makes it active.
+     *
+     * @param x The x-coordinate of the star's position.
+     * @param y The y-coordinate of the star's position.
+     */
+    public void spawn(double x, double y) {
+        store.vx[slot] = 0; // Horizontal velocity (star is stationary)
+        store.vy[slot] = 0; // Vertical velocity (star is stationary)
+        store.ay[slot] = 0; // Vertical acceleration (star is stationary)
+        store.ax[slot] = 0; // Horizontal acceleration (star is stationary)
+        store.x[slot] = x; // Set the x-coordinate of the star
+        store.y[slot] = y; // Set the y-coordinate of the star
+        store.w[slot] = World.TILE_SIZE / 2; // Set the width to half the size of a tile
+        store.h[slot] = World.TILE_SIZE / 2; // Set the height to half the size of a tile
+        this.sprite = SpriteId.STAR; // Sprite of the star
+        isActive = true; // The star is active by default (collectible)
+        savePreviousState(); // The star never moves
+    }//end spawn
+
     /**
      * Updates the state of the star. In this case, it calls the superclass's update method,
      *
@@ -43,18 +66,6 @@ public class Star extends GameObject{
         super.update(deltaTime); // Call the update method of the superclass
     }//end update
     
-     /**
-     * Draws the star on the canvas at its current position.
-     * The star is drawn using the image and its current coordinates, with a level offset for scrolling effects.
-     *
-     * @param context The GraphicsContext used for drawing on the canvas.
-     * @param lvlOffset The horizontal offset for the star's drawing position (useful for scrolling).
-     */
-    @Override
-    public void draw(GraphicsContext context, double lvlOffset) {
-        context.drawImage(image, x - lvlOffset, y, w, h); // Draw the star image at the current position
-    }//end draw
-    
     /**
      * Returns whether the star is currently active.
      *
@@ -73,5 +84,27 @@ public class Star extends GameObject{
     public void setActive(boolean isActive) {
         this.isActive = isActive;
     }//end setActive
+
+    /**
+     * Writes the state of the star, with whether it is active (see SaveGame).
+     *
+     * @param out the buffer receiving the state
+     */
+    @Override
+    void writeState(ByteBuffer out) {
+        super.writeState(out);
+        out.put((byte) (isActive ? 1 : 0));
+    }//end writeState
+
+    /**
+     * Reads back the state written by writeState.
+     *
+     * @param in the buffer holding the state
+     */
+    @Override
+    void readState(ByteBuffer in) {
+        super.readState(in);
+        isActive = in.get() != 0;
+    }//end readState
     
 }//end class
@@ -0,0 +1,33 @@
+/**
+ * A level whose layout is stored as an array of strings, one per row, like
+ * the levels of the Levels class.
+ */
+public class StringLevel implements LevelSource {
+
+    private final String[] rows; // The rows of the level, from top to bottom
+
+    /**
+     * Constructs a level from its rows.
+     *
+     * @param rows the rows of the level, all of the same length
+     */
+    public StringLevel(String[] rows) {
+        this.rows = rows;
+    }//end constructor
+
+    @Override
+    public int getColumns() {
+        return rows[0].length();
+    }//end getColumns
+
+    @Override
+    public int getRows() {
+        return rows.length;
+    }//end getRows
+
+    @Override
+    public char getTile(int column, int row) {
+        return rows[row].charAt(column);
+    }//end getTile
+
+}//end class
@@ -0,0 +1,149 @@
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Draws the platforms and the lava of the level from pre-rendered images.
+ *
+ * The tiles of a chunk never change, so each chunk is rasterized once into a
+ * WritableImage the first time it is visible. Every frame then only draws one
+ * image per visible chunk instead of one rectangle per tile. A chunk is only
+ * rendered again if it is replaced by a new LevelChunk (for example after it
+ * was evicted and loaded again). Images of evicted chunks are reused.
+ */
+public class TileLayer {
+
+    private static final int PLATFORM_ARGB = 0xFF000000; // Color of the platforms (black)
+    private static final int LAVA_ARGB = 0xFFFF0000; // Color of the lava (red)
+    private static final int EMPTY_ARGB = 0x00000000; // Color of empty tiles (transparent)
+
+    private IdentityHashMap<LevelChunk, WritableImage> baked = new IdentityHashMap<>(); // Image of each chunk
+    private IdentityHashMap<LevelChunk, Boolean> installed = new IdentityHashMap<>(); // Chunks installed now
+    private LevelChunk lastFirst, lastLast; // First and last installed chunks seen by the last release
+    private int lastCount; // Number of installed chunks seen by the last release
+    private ArrayDeque<WritableImage> spare = new ArrayDeque<>(); // Images of evicted chunks
+    private int[] tiles = new int[0]; // Colors of the tiles of the chunk being baked
+    private int[] line = new int[0]; // One line of pixels of the chunk being baked
+    private long bakes; // Number of chunks rendered so far
+
+    /**
+     * Draws the visible chunks of the level.
+     *
+     * @param context   the GraphicsContext used for drawing
+     * @param chunks    the installed chunks, from left to right
+     * @param first     the index in chunks of the first visible chunk
+     * @param last      the index in chunks of the last visible chunk
+     * @param lvlOffset the horizontal offset of the camera
+     * @return the number of images drawn
+     */
+    public int draw(GraphicsContext context, ArrayList<LevelChunk> chunks, int first, int last, double lvlOffset) {
+        release(chunks);
+        int drawn = 0;
+        for (int i = first; i <= last; i++) {
+            LevelChunk chunk = chunks.get(i);
+            WritableImage image = baked.get(chunk);
+            if (image == null) {
+                image = bake(chunk);
+                baked.put(chunk, image);
+            }
+            context.drawImage(image, chunk.getLeft() - lvlOffset, 0);
+            drawn++;
+        }
+        return drawn;
+    }//end draw
+
+    /**
+     * Keeps the images of the installed chunks and sets the others aside.
+     * The installed chunks follow each other, and a chunk that is installed
+     * again is a new LevelChunk, so nothing has to be done while the first
+     * and last chunks and their number stay the same. The list itself may be
+     * refilled in place (see RenderSnapshot), so it cannot tell a change.
+     */
+    private void release(ArrayList<LevelChunk> chunks) {
+        int count = chunks.size();
+        LevelChunk first = count == 0 ? null : chunks.get(0);
+        LevelChunk last = count == 0 ? null : chunks.get(count - 1);
+        if (first == lastFirst && last == lastLast && count == lastCount) {
+            return;
+        }
+        lastFirst = first;
+        lastLast = last;
+        lastCount = count;
+        installed.clear();
+        for (int i = 0; i < chunks.size(); i++) {
+            installed.put(chunks.get(i), Boolean.TRUE);
+        }
+        Iterator<Map.Entry<LevelChunk, WritableImage>> iterator = baked.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<LevelChunk, WritableImage> entry = iterator.next();
+            if (!installed.containsKey(entry.getKey())) {
+                spare.push(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }//end release
+
+    /**
+     * Renders the tiles of a chunk into an image.
+     */
+    private WritableImage bake(LevelChunk chunk) {
+        int tileSize = (int) World.TILE_SIZE;
+        int columns = chunk.getColumns();
+        int rows = (int) Math.ceil(World.HEIGHT / World.TILE_SIZE);
+        int width = columns * tileSize;
+        int height = rows * tileSize;
+
+        // Reuse the image of an evicted chunk when it has the right size
+        WritableImage image = spare.poll();
+        if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+
+        // Lay out the colors of the tiles
+        if (tiles.length < columns * rows) {
+            tiles = new int[columns * rows];
+        }
+        Arrays.fill(tiles, 0, columns * rows, EMPTY_ARGB);
+        for (Platform platform : chunk.getPlatforms()) {
+            tiles[index(chunk, platform, columns)] = PLATFORM_ARGB;
+        }
+        for (Lava lava : chunk.getLava()) {
+            tiles[index(chunk, lava, columns)] = LAVA_ARGB;
+        }
+
+        // Write one line of pixels per row of tiles and repeat it over the height of the row
+        if (line.length < width) {
+            line = new int[width];
+        }
+        PixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Arrays.fill(line, column * tileSize, (column + 1) * tileSize, tiles[row * columns + column]);
+            }
+            image.getPixelWriter().setPixels(0, row * tileSize, width, tileSize, format, line, 0, 0);
+        }
+        bakes++;
+        return image;
+    }//end bake
+
+    /**
+     * Gets the position of a tile in the color grid of its chunk.
+     */
+    private static int index(LevelChunk chunk, Platform tile, int columns) {
+        int column = (int) Math.floor(tile.getLeft() / World.TILE_SIZE) - chunk.getFirstColumn();
+        int row = (int) Math.floor(tile.getUp() / World.TILE_SIZE);
+        return row * columns + column;
+    }//end index
+
+    public long getBakes() {
+        return bakes;
+    }//end getBakes
+
+}//end class
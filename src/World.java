@@ -0,0 +1,13 @@
+/**
+ * The dimensions of the game world.
+ *
+ * These constants are shared by the simulation and the JavaFX front end; they
+ * live here rather than in Main so that the simulation can be compiled and run
+ * without JavaFX.
+ */
+public class World {
+
+    //The size of the visible part of the level and of one tile, in pixels
+    public static final double WIDTH = 1280, HEIGHT = 720, TILE_SIZE = 60;
+
+}//end class